@@ -0,0 +1,57 @@
+package com.abb.flowable.domain;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import java.io.Serializable;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 首页各列表的数量和第一页：TaskQuery.TYPE x TaskQuery.STATE
+ *
+ * @author cenpeng.lwm
+ * @since 2026/10/17
+ */
+public class DashboardDTO implements Serializable {
+    private static final long serialVersionUID = -2311865930175237482L;
+    private Map<TaskQuery.TYPE, Map<TaskQuery.STATE, Integer>> counts = new EnumMap<>(TaskQuery.TYPE.class);
+    /**
+     * 各类型STATE.ALL的第一页，limit为0时为空
+     */
+    private Map<TaskQuery.TYPE, List<TaskDTO>> tasks = new EnumMap<>(TaskQuery.TYPE.class);
+
+    public int getCount(TaskQuery.TYPE type, TaskQuery.STATE state) {
+        Map<TaskQuery.STATE, Integer> map = counts.get(type);
+        Integer count = map == null ? null : map.get(state);
+        return count == null ? 0 : count;
+    }
+
+    public DashboardDTO setCount(TaskQuery.TYPE type, TaskQuery.STATE state, int count) {
+        counts.computeIfAbsent(type, k -> new EnumMap<>(TaskQuery.STATE.class)).put(state, count);
+        return this;
+    }
+
+    public List<TaskDTO> getTasks(TaskQuery.TYPE type) {
+        return tasks.get(type);
+    }
+
+    public DashboardDTO setTasks(TaskQuery.TYPE type, List<TaskDTO> list) {
+        tasks.put(type, list);
+        return this;
+    }
+
+    public Map<TaskQuery.TYPE, Map<TaskQuery.STATE, Integer>> getCounts() {
+        return counts;
+    }
+
+    public Map<TaskQuery.TYPE, List<TaskDTO>> getTasks() {
+        return tasks;
+    }
+
+    @Override
+    public String toString() {
+        return ToStringBuilder.reflectionToString(this, ToStringStyle.SHORT_PREFIX_STYLE);
+    }
+}
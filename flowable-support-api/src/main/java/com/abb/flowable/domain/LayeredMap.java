@@ -0,0 +1,265 @@
+package com.abb.flowable.domain;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * 分层的变量Map：共享的流程变量层 + 节点local变量层，读取时上层覆盖下层，不复制共享层
+ * <p>
+ * 写入和删除只记录在本实例私有的一层，不影响共享层，共享层创建后不应再修改。size在第一次读取时计算，之后随写入和删除增减。
+ * <p>
+ * Java序列化时替换为HashMap；Hessian等按Map序列化的框架不识别writeReplace，反序列化时用public无参构造再逐个put，
+ * 所有值都落在私有层
+ *
+ * @author cenpeng.lwm
+ * @since 2026/10/17
+ */
+public class LayeredMap extends AbstractMap<String, Object> implements Serializable {
+    private static final long serialVersionUID = 2853347618251650732L;
+    private transient Map<String, Object> base;
+    private transient Map<String, Object> overlay;
+    private transient Map<String, Object> local;
+    private transient Set<String> removed;
+    /**
+     * 可见的key数，-1表示还未计算
+     */
+    private transient int size = -1;
+
+    public LayeredMap() {
+        this(null, null);
+    }
+
+    /**
+     * @param base    共享的下层，可以为null
+     * @param overlay 覆盖base的上层，可以为null
+     */
+    public LayeredMap(Map<String, Object> base, Map<String, Object> overlay) {
+        this.base = base == null ? Collections.emptyMap() : base;
+        this.overlay = overlay == null ? Collections.emptyMap() : overlay;
+    }
+
+    /**
+     * 复制私有层，共享层和上层仍然共享；两个实例之后的写入和删除互不影响
+     *
+     * @param other
+     */
+    public LayeredMap(LayeredMap other) {
+        this.base = other.base;
+        this.overlay = other.overlay;
+        this.local = other.local == null ? null : new HashMap<>(other.local);
+        this.removed = other.removed == null ? null : new HashSet<>(other.removed);
+        this.size = other.size;
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (local != null && local.containsKey(key)) {
+            return local.get(key);
+        }
+        if (removed != null && removed.contains(key)) {
+            return null;
+        }
+        return overlay.containsKey(key) ? overlay.get(key) : base.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (local != null && local.containsKey(key)) {
+            return true;
+        }
+        if (removed != null && removed.contains(key)) {
+            return false;
+        }
+        return overlay.containsKey(key) || base.containsKey(key);
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        if (size >= 0 && !containsKey(key)) {
+            size++;
+        }
+        Object old = get(key);
+        if (local == null) {
+            local = new HashMap<>(8);
+        }
+        local.put(key, value);
+        return old;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        if (!containsKey(key)) {
+            return null;
+        }
+        if (size >= 0) {
+            size--;
+        }
+        Object old = get(key);
+        if (local != null) {
+            local.remove(key);
+        }
+        if (overlay.containsKey(key) || base.containsKey(key)) {
+            if (removed == null) {
+                removed = new HashSet<>();
+            }
+            removed.add((String)key);
+        }
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        local = null;
+        removed = new HashSet<>(overlay.keySet());
+        removed.addAll(base.keySet());
+        size = 0;
+    }
+
+    @Override
+    public int size() {
+        if (size < 0) {
+            int count = 0;
+            for (Iterator<Entry<String, Object>> iterator = new LayeredIterator(); iterator.hasNext(); iterator.next()) {
+                count++;
+            }
+            size = count;
+        }
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<Entry<String, Object>>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return new LayeredIterator();
+            }
+
+            @Override
+            public int size() {
+                return LayeredMap.this.size();
+            }
+        };
+    }
+
+    private Object writeReplace() {
+        return new HashMap<>(this);
+    }
+
+    /**
+     * 只读的entry，读取值时才调用下层entry，下层的延迟加载值不会因遍历key而加载
+     */
+    private static class LayerEntry implements Entry<String, Object> {
+        private final Entry<String, Object> entry;
+
+        private LayerEntry(Entry<String, Object> entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public String getKey() {
+            return entry.getKey();
+        }
+
+        @Override
+        public Object getValue() {
+            return entry.getValue();
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry<?, ?> e = (Entry<?, ?>)o;
+            return Objects.equals(getKey(), e.getKey()) && Objects.equals(getValue(), e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(getKey()) ^ Objects.hashCode(getValue());
+        }
+
+        @Override
+        public String toString() {
+            return getKey() + "=" + getValue();
+        }
+    }
+
+    /**
+     * 依次遍历local、overlay、base，跳过被上层覆盖或已删除的key
+     */
+    private class LayeredIterator implements Iterator<Entry<String, Object>> {
+        private final List<Iterator<Entry<String, Object>>> layers = new ArrayList<>(3);
+        private int layer;
+        private Entry<String, Object> next;
+        private String last;
+
+        private LayeredIterator() {
+            layers.add(local == null ? Collections.<String, Object>emptyMap().entrySet().iterator() : new HashMap<>(local).entrySet().iterator());
+            layers.add(overlay.entrySet().iterator());
+            layers.add(base.entrySet().iterator());
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+            while (layer < layers.size()) {
+                Iterator<Entry<String, Object>> iterator = layers.get(layer);
+                while (iterator.hasNext()) {
+                    Entry<String, Object> entry = iterator.next();
+                    if (visible(entry.getKey())) {
+                        next = new LayerEntry(entry);
+                        return;
+                    }
+                }
+                layer++;
+            }
+        }
+
+        private boolean visible(String key) {
+            if (layer == 0) {
+                return true;
+            }
+            if ((local != null && local.containsKey(key)) || (removed != null && removed.contains(key))) {
+                return false;
+            }
+            return layer == 1 || !overlay.containsKey(key);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry<String, Object> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Entry<String, Object> entry = next;
+            last = entry.getKey();
+            advance();
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            LayeredMap.this.remove(last);
+            last = null;
+        }
+    }
+}
@@ -4,6 +4,7 @@ import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 
 import java.io.Serializable;
+import java.util.Set;
 
 /**
  * @author cenpeng.lwm
@@ -14,6 +15,19 @@ public class Options implements Serializable {
     private boolean withVariables;
     private boolean replaceLocalVariables = true;
     private boolean withFormKey;
+    /**
+     * 只加载指定名称的变量，为空时加载全部；内置的title、user_id等始终加载
+     */
+    private Set<String> variableNames;
+
+    public Set<String> getVariableNames() {
+        return variableNames;
+    }
+
+    public Options setVariableNames(Set<String> variableNames) {
+        this.variableNames = variableNames;
+        return this;
+    }
 
     public boolean isWithFormKey() {
         return withFormKey;
@@ -28,6 +28,10 @@ public abstract class RequestDTO implements Serializable {
      * 全局变量
      */
     private Map<String, Object> variables;
+    /**
+     * 幂等key，有效期内重复提交时直接返回第一次的结果，不再调用引擎
+     */
+    private String requestKey;
 
     public RequestDTO addVariable(String k, Object v) {
         if (variables == null) {
@@ -93,6 +97,14 @@ public abstract class RequestDTO implements Serializable {
         this.variables = variables;
     }
 
+    public String getRequestKey() {
+        return requestKey;
+    }
+
+    public void setRequestKey(String requestKey) {
+        this.requestKey = requestKey;
+    }
+
     @Override
     public String toString() {
         return ToStringBuilder.reflectionToString(this, ToStringStyle.SHORT_PREFIX_STYLE);
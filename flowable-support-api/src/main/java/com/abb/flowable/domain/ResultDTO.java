@@ -13,13 +13,33 @@ public class ResultDTO<T> implements Serializable {
     private static final long serialVersionUID = 4196449326985418273L;
     public static final int ERROR_CODE_SYSTEM_ERROR = 500;
     public static final int ERROR_CODE_USER_NOT_LOGIN = 502;
+    /**
+     * 异步线程池队列已满
+     */
+    public static final int ERROR_CODE_BUSY = 503;
     public static final int ERROR_CODE_DUP_USER_ERROR = 600;
     public static final int ERROR_CODE_USER_NOT_FOUND = 601;
     public static final int ERROR_CODE_USER_VALIDATE = 602;
+    /**
+     * 异步完成队列已满
+     */
+    public static final int ERROR_CODE_QUEUE_FULL = 603;
+    /**
+     * 并发修改同一流程实例，重试后仍然冲突
+     */
+    public static final int ERROR_CODE_CONFLICT = 604;
     private boolean success;
     private int errCode;
     private String errMsg;
     private int total;
+    /**
+     * total为估算值（达到TaskQuery.totalLimit）
+     */
+    private boolean totalEstimated;
+    /**
+     * 下一页游标，没有更多数据时为空
+     */
+    private String cursor;
     private T data;
 
     public ResultDTO(boolean success) {
@@ -78,6 +98,16 @@ public class ResultDTO<T> implements Serializable {
         return this;
     }
 
+    public ResultDTO<T> setTotalEstimated(boolean totalEstimated) {
+        this.totalEstimated = totalEstimated;
+        return this;
+    }
+
+    public ResultDTO<T> setCursor(String cursor) {
+        this.cursor = cursor;
+        return this;
+    }
+
     public ResultDTO<T> setData(T data) {
         this.data = data;
         return this;
@@ -99,6 +129,14 @@ public class ResultDTO<T> implements Serializable {
         return total;
     }
 
+    public boolean isTotalEstimated() {
+        return totalEstimated;
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+
     public T getData() {
         return data;
     }
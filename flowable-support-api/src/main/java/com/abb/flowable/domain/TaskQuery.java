@@ -5,6 +5,7 @@ import org.apache.commons.lang3.builder.ToStringStyle;
 
 import java.io.Serializable;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * @author cenpeng.lwm
@@ -33,6 +34,10 @@ public class TaskQuery implements Serializable {
     }
 
     private boolean withVariables = true;
+    /**
+     * 只加载指定名称的变量，为空时加载全部；内置的title、user_id等始终加载
+     */
+    private Set<String> variableNames;
     /**
      * 用户id
      */
@@ -42,7 +47,15 @@ public class TaskQuery implements Serializable {
     private String processDefinitionKey;
     private int start;
     private int limit;
+    /**
+     * 游标，传入上一页返回的ResultDTO.cursor，设置后忽略start
+     */
+    private String cursor;
     private boolean needTotal;
+    /**
+     * 总数上限，大于0时最多统计到该值，超过时ResultDTO.totalEstimated为true（如显示999+）
+     */
+    private int totalLimit;
     /**
      * 发起人过滤，通过内置variable：initiator_id 过滤
      */
@@ -99,6 +112,15 @@ public class TaskQuery implements Serializable {
         return this;
     }
 
+    public int getTotalLimit() {
+        return totalLimit;
+    }
+
+    public TaskQuery setTotalLimit(int totalLimit) {
+        this.totalLimit = totalLimit;
+        return this;
+    }
+
     public String getUserId() {
         return userId;
     }
@@ -148,11 +170,29 @@ public class TaskQuery implements Serializable {
         return this;
     }
 
+    public String getCursor() {
+        return cursor;
+    }
+
+    public TaskQuery setCursor(String cursor) {
+        this.cursor = cursor;
+        return this;
+    }
+
     public TaskQuery setWithVariables(boolean withVariables) {
         this.withVariables = withVariables;
         return this;
     }
 
+    public Set<String> getVariableNames() {
+        return variableNames;
+    }
+
+    public TaskQuery setVariableNames(Set<String> variableNames) {
+        this.variableNames = variableNames;
+        return this;
+    }
+
     public STATE getState() {
         return state;
     }
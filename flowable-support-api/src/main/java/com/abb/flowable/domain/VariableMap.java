@@ -0,0 +1,214 @@
+package com.abb.flowable.domain;
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * 变量Map，部分值可以在第一次读取时才加载(如外部存储的大byte[])，只遍历key或读取其他变量时不会加载
+ * <p>
+ * 序列化时加载全部值并替换为HashMap；有public无参构造，Hessian等按Map序列化的框架可以直接反序列化
+ *
+ * @author cenpeng.lwm
+ * @since 2026/10/17
+ */
+public class VariableMap extends AbstractMap<String, Object> implements Serializable {
+    private static final long serialVersionUID = -2298420218866335437L;
+    private final Map<String, Object> values;
+    private transient Map<String, Supplier<?>> lazy;
+
+    public VariableMap() {
+        this(8);
+    }
+
+    public VariableMap(int initialCapacity) {
+        values = new HashMap<>(initialCapacity);
+    }
+
+    /**
+     * 复制另一个VariableMap时保留未加载的值
+     *
+     * @param map
+     */
+    public VariableMap(Map<String, ?> map) {
+        this(Math.max(8, map.size() * 2));
+        if (map instanceof VariableMap) {
+            VariableMap other = (VariableMap)map;
+            synchronized (other) {
+                values.putAll(other.values);
+                if (other.lazy != null) {
+                    lazy = new HashMap<>(other.lazy);
+                }
+            }
+        } else {
+            values.putAll(map);
+        }
+    }
+
+    /**
+     * 值在第一次读取时由supplier加载，之后不再调用
+     *
+     * @param key
+     * @param supplier
+     */
+    public synchronized void putLazy(String key, Supplier<?> supplier) {
+        values.remove(key);
+        if (lazy == null) {
+            lazy = new HashMap<>(4);
+        }
+        lazy.put(key, supplier);
+    }
+
+    @Override
+    public synchronized Object get(Object key) {
+        if (values.containsKey(key)) {
+            return values.get(key);
+        }
+        Supplier<?> supplier = lazy == null ? null : lazy.remove(key);
+        if (supplier == null) {
+            return null;
+        }
+        Object value = supplier.get();
+        values.put((String)key, value);
+        return value;
+    }
+
+    @Override
+    public synchronized boolean containsKey(Object key) {
+        return values.containsKey(key) || (lazy != null && lazy.containsKey(key));
+    }
+
+    /**
+     * @return 旧值未加载时返回null，不为返回旧值而加载
+     */
+    @Override
+    public synchronized Object put(String key, Object value) {
+        if (lazy != null) {
+            lazy.remove(key);
+        }
+        return values.put(key, value);
+    }
+
+    /**
+     * @return 旧值未加载时返回null，不为返回旧值而加载
+     */
+    @Override
+    public synchronized Object remove(Object key) {
+        if (lazy != null) {
+            lazy.remove(key);
+        }
+        return values.remove(key);
+    }
+
+    @Override
+    public synchronized int size() {
+        return values.size() + (lazy == null ? 0 : lazy.size());
+    }
+
+    @Override
+    public synchronized boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public synchronized void clear() {
+        values.clear();
+        lazy = null;
+    }
+
+    /**
+     * 遍历创建时的key快照，entry的值在读取时才加载
+     */
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<Entry<String, Object>>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                Iterator<String> keys = keys().iterator();
+                return new Iterator<Entry<String, Object>>() {
+                    private String last;
+
+                    @Override
+                    public boolean hasNext() {
+                        return keys.hasNext();
+                    }
+
+                    @Override
+                    public Entry<String, Object> next() {
+                        last = keys.next();
+                        return new LazyEntry(last);
+                    }
+
+                    @Override
+                    public void remove() {
+                        if (last == null) {
+                            throw new IllegalStateException();
+                        }
+                        VariableMap.this.remove(last);
+                        last = null;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return VariableMap.this.size();
+            }
+        };
+    }
+
+    private synchronized List<String> keys() {
+        List<String> keys = new ArrayList<>(size());
+        keys.addAll(values.keySet());
+        if (lazy != null) {
+            keys.addAll(lazy.keySet());
+        }
+        return keys;
+    }
+
+    private Object writeReplace() {
+        return new HashMap<>(this);
+    }
+
+    private class LazyEntry implements Entry<String, Object> {
+        private final String key;
+
+        private LazyEntry(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public Object getValue() {
+            return get(key);
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            return put(key, value);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry<?, ?> e = (Entry<?, ?>)o;
+            return Objects.equals(key, e.getKey()) && Objects.equals(getValue(), e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(key) ^ Objects.hashCode(getValue());
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + getValue();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.abb.flowable.service;
+
+import com.abb.flowable.domain.*;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * FlowService的异步版本，方法含义与FlowService相同，结果在独立的线程池中计算
+ * <p>
+ * 线程池队列满时立即返回ResultDTO.ERROR_CODE_BUSY，不会阻塞调用线程；调用抛出异常或返回null时future以异常结束
+ *
+ * @author cenpeng.lwm
+ * @since 2026/10/17
+ */
+public interface AsyncFlowService {
+    /**
+     * 查询任务
+     *
+     * @param taskId
+     * @param options
+     * @return
+     */
+    CompletableFuture<ResultDTO<TaskDTO>> getTask(String taskId, Options options);
+
+    /**
+     * 查询
+     *
+     * @param query
+     * @return
+     */
+    CompletableFuture<ResultDTO<List<TaskDTO>>> query(TaskQuery query);
+
+    /**
+     * 首页各列表的数量和第一页
+     *
+     * @param query
+     * @return
+     */
+    CompletableFuture<ResultDTO<DashboardDTO>> dashboard(TaskQuery query);
+
+    /**
+     * 提交流程
+     *
+     * @param processDefinitionKey
+     * @param flowSubmitDTO
+     * @return
+     */
+    CompletableFuture<ResultDTO<ProcessInstanceDTO>> submitProcessor(String processDefinitionKey, SubmitDTO flowSubmitDTO);
+
+    /**
+     * 批量提交流程
+     *
+     * @param processDefinitionKey
+     * @param submits
+     * @return
+     */
+    CompletableFuture<ResultDTO<List<ResultDTO<ProcessInstanceDTO>>>> submitAll(String processDefinitionKey, List<SubmitDTO> submits);
+
+    /**
+     * 完成节点
+     *
+     * @param taskId
+     * @param completeDTO
+     * @return
+     */
+    CompletableFuture<ResultDTO<Void>> complete(String taskId, CompleteDTO completeDTO);
+
+    /**
+     * 批量完成节点
+     *
+     * @param completes taskId -> CompleteDTO
+     * @return
+     */
+    CompletableFuture<ResultDTO<Map<String, ResultDTO<Void>>>> completeAll(Map<String, CompleteDTO> completes);
+
+    /**
+     * 通过processInstanceId获取节点信息
+     *
+     * @param processInstanceId
+     * @param options
+     * @return
+     */
+    CompletableFuture<ResultDTO<List<ProcessNodeDTO>>> getByInstanceId(String processInstanceId, Options options);
+
+    /**
+     * 批量获取多个流程实例的节点信息
+     *
+     * @param processInstanceIds
+     * @param options
+     * @return
+     */
+    CompletableFuture<ResultDTO<Map<String, List<ProcessNodeDTO>>>> getByInstanceIds(Collection<String> processInstanceIds, Options options);
+
+    /**
+     * 查询表单formKey
+     *
+     * @param processKey
+     * @return
+     */
+    CompletableFuture<ResultDTO<String>> getStartFormKey(String processKey);
+
+    /**
+     * 查询表单formKey
+     *
+     * @param processDefinitionId
+     * @param taskDefinitionKey
+     * @return
+     */
+    CompletableFuture<ResultDTO<String>> getFormKey(String processDefinitionId, String taskDefinitionKey);
+}
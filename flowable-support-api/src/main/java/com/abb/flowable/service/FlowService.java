@@ -1,7 +1,10 @@
 package com.abb.flowable.service;
 
 import com.abb.flowable.domain.*;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * @author cenpeng.lwm
@@ -33,6 +36,23 @@ public interface FlowService {
      */
     ResultDTO<List<TaskDTO>> query(TaskQuery query);
 
+    /**
+     * 流式查询，用于导出：按游标分批读取，每批批量加载变量后逐条回调，内存占用与结果总数无关
+     *
+     * @param query    limit为每批条数，忽略start、cursor和needTotal
+     * @param consumer 抛出异常时终止查询
+     * @return 回调的条数
+     */
+    ResultDTO<Long> stream(TaskQuery query, Consumer<TaskDTO> consumer);
+
+    /**
+     * 首页：一次返回发起、待处理、处理过在各状态下的数量，limit大于0时同时返回各类型的第一页
+     *
+     * @param query 使用userId、processDefinitionKey、initiatorId、title等过滤条件和limit，忽略type、state和分页
+     * @return
+     */
+    ResultDTO<DashboardDTO> dashboard(TaskQuery query);
+
     /**
      * 提交流程
      *
@@ -42,6 +62,15 @@ public interface FlowService {
      */
     ResultDTO<ProcessInstanceDTO> submitProcessor(String processDefinitionKey, SubmitDTO flowSubmitDTO);
 
+    /**
+     * 批量提交流程，用于导入和批处理：分批在同一个事务内启动，单个失败不影响其他批次
+     *
+     * @param processDefinitionKey
+     * @param submits
+     * @return 与submits顺序一致的每个流程的结果
+     */
+    ResultDTO<List<ResultDTO<ProcessInstanceDTO>>> submitAll(String processDefinitionKey, List<SubmitDTO> submits);
+
     /**
      * 完成节点
      *
@@ -51,6 +80,27 @@ public interface FlowService {
      */
     ResultDTO<Void> complete(String taskId, CompleteDTO completeDTO);
 
+    /**
+     * 批量完成节点，多个任务在同一个事务内完成
+     *
+     * @param completes taskId -> CompleteDTO
+     * @return taskId -> 每个任务的结果
+     */
+    ResultDTO<Map<String, ResultDTO<Void>>> completeAll(Map<String, CompleteDTO> completes);
+
+    /**
+     * 异步完成节点，请求持久化到本地队列后即返回成功，同一流程实例的请求按提交顺序执行；
+     * 返回成功不代表任务存在，后台处理失败的请求进入死信
+     * <p>
+     * 队列已满时返回ResultDTO.ERROR_CODE_QUEUE_FULL
+     *
+     * @param taskId
+     * @param processInstanceId 任务所属的流程实例id，为null时只保证同一任务的请求按顺序执行
+     * @param completeDTO
+     * @return
+     */
+    ResultDTO<Void> completeAsync(String taskId, String processInstanceId, CompleteDTO completeDTO);
+
     /**
      * 通过processInstanceId获取节点信息
      *
@@ -60,6 +110,15 @@ public interface FlowService {
      */
     ResultDTO<List<ProcessNodeDTO>> getByInstanceId(String processInstanceId, Options options);
 
+    /**
+     * 批量获取多个流程实例的节点信息，节点和变量各用IN查询一次取出
+     *
+     * @param processInstanceIds
+     * @param options
+     * @return processInstanceId -> 节点，不存在的流程实例不在结果中
+     */
+    ResultDTO<Map<String, List<ProcessNodeDTO>>> getByInstanceIds(Collection<String> processInstanceIds, Options options);
+
     /**
      * 查询表单formKey
      *
@@ -0,0 +1,94 @@
+package com.abb.flowable.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * needTotal查询的总数缓存，按过滤条件缓存，过期或流程有提交/审批后失效
+ *
+ * @author cenpeng.lwm
+ * @since 2026/10/17
+ */
+public class CountCache {
+    private final long ttl;
+    private final int maxSize;
+    private final ConcurrentHashMap<String, Entry> cache = new ConcurrentHashMap<>();
+    /**
+     * 每次失效加1，失效前开始计算的总数不再写入缓存
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    public CountCache(long ttl, int maxSize) {
+        this.ttl = ttl;
+        this.maxSize = maxSize;
+    }
+
+    public long generation() {
+        return generation.get();
+    }
+
+    public Total get(String key) {
+        Entry entry = cache.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.generation != generation.get() || entry.expireAt < System.currentTimeMillis()) {
+            cache.remove(key, entry);
+            return null;
+        }
+        return entry.total;
+    }
+
+    public void put(String key, long generation, Total total) {
+        if (generation != this.generation.get()) {
+            return;
+        }
+        if (cache.size() >= maxSize) {
+            long now = System.currentTimeMillis();
+            cache.values().removeIf(entry -> entry.expireAt < now);
+            if (cache.size() >= maxSize) {
+                cache.clear();
+            }
+        }
+        cache.put(key, new Entry(total, generation, System.currentTimeMillis() + ttl));
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        cache.clear();
+    }
+
+    private static class Entry {
+        private final Total total;
+        private final long generation;
+        private final long expireAt;
+
+        private Entry(Total total, long generation, long expireAt) {
+            this.total = total;
+            this.generation = generation;
+            this.expireAt = expireAt;
+        }
+    }
+
+    public static class Total {
+        public static final Total NONE = new Total(0, false);
+        private final int total;
+        /**
+         * 超过TaskQuery.totalLimit，total只是上限值
+         */
+        private final boolean estimated;
+
+        public Total(int total, boolean estimated) {
+            this.total = total;
+            this.estimated = estimated;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        public boolean isEstimated() {
+            return estimated;
+        }
+    }
+}
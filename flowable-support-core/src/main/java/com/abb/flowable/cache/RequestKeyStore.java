@@ -0,0 +1,234 @@
+package com.abb.flowable.cache;
+
+import com.abb.flowable.utils.NamedThreadFactory;
+import com.abb.flowable.utils.Tables;
+import com.abb.flowable.utils.Transactions;
+import org.flowable.engine.common.impl.db.DbSqlSession;
+import org.flowable.engine.common.impl.interceptor.CommandContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.*;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 幂等请求的结果存储：本地LRU + FLW_REQUEST_KEY表，请求key在ttl内重复时返回第一次的结果
+ * <p>
+ * 记录在引擎命令内用同一个连接插入，与流程启动/任务完成在同一事务提交；并发的重复请求主键冲突后整体回滚。
+ * 超过{@value #KEY_LENGTH}个字符的key按SHA-256摘要存储。建表脚本见{@link Tables#CREATE_SCRIPT}
+ * <p>
+ * select VALUE_, CREATE_TIME_ from FLW_REQUEST_KEY where KEY_ = ?
+ *
+ * @author cenpeng.lwm
+ * @since 2026/10/17
+ */
+public class RequestKeyStore {
+    private static final int KEY_LENGTH = 255;
+    private static final String HASH_PREFIX = "sha256:";
+    private static final Logger logger = LoggerFactory.getLogger(RequestKeyStore.class);
+    private final DataSource dataSource;
+    private final String table;
+    private final long ttl;
+    private final Map<String, Entry> cache;
+    private final ScheduledThreadPoolExecutor cleaner = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("flow-request-key-"));
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param dataSource
+     * @param tablePrefix
+     * @param ttl         请求key的有效期(ms)
+     * @param maxSize     本地缓存的key数量
+     */
+    public RequestKeyStore(DataSource dataSource, String tablePrefix, long ttl, int maxSize) {
+        this.dataSource = dataSource;
+        this.table = (tablePrefix == null ? "" : tablePrefix) + "FLW_REQUEST_KEY";
+        this.ttl = ttl;
+        this.cache = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * 检查表是否存在，并定时删除过期记录
+     *
+     * @param createTable 表不存在时建表，否则抛出异常
+     * @throws SQLException
+     */
+    public void init(boolean createTable) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            if (!Tables.exists(connection, table)) {
+                if (!createTable) {
+                    throw Tables.notFound(table);
+                }
+                createTable(connection);
+            }
+        }
+        long period = Math.max(ttl, TimeUnit.MINUTES.toMillis(1));
+        cleaner.scheduleWithFixedDelay(this::clean, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public void shutdown() {
+        cleaner.shutdownNow();
+    }
+
+    /**
+     * 先查本地缓存，未命中时按主键查一次表
+     *
+     * @param key
+     * @return 第一次请求的结果，不存在或已过期时返回null
+     * @throws SQLException
+     */
+    public String get(String key) throws SQLException {
+        key = storeKey(key);
+        long now = System.currentTimeMillis();
+        synchronized (cache) {
+            Entry entry = cache.get(key);
+            if (entry != null && entry.expireAt > now) {
+                hits.increment();
+                return entry.value;
+            }
+        }
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement ps = connection.prepareStatement("select VALUE_, CREATE_TIME_ from " + table + " where KEY_ = ?")) {
+            ps.setString(1, key);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    long expireAt = rs.getLong(2) + ttl;
+                    if (expireAt > now) {
+                        String value = rs.getString(1);
+                        cache(key, value, expireAt);
+                        hits.increment();
+                        return value;
+                    }
+                    // 过期的记录先删除，否则同一个key无法再插入
+                    delete(connection, key);
+                }
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * 在当前引擎命令的连接上插入记录，事务提交后写入本地缓存；抛出异常时整个命令回滚
+     *
+     * @param commandContext
+     * @param key
+     * @param value
+     * @throws IllegalStateException key已存在(duplicate request key)或插入失败
+     */
+    public void put(CommandContext commandContext, String key, String value) {
+        String storeKey = storeKey(key);
+        Connection connection = commandContext.getSession(DbSqlSession.class).getSqlSession().getConnection();
+        long now = System.currentTimeMillis();
+        try (PreparedStatement ps = connection.prepareStatement("insert into " + table + " (KEY_, VALUE_, CREATE_TIME_) values (?, ?, ?)")) {
+            ps.setString(1, storeKey);
+            ps.setString(2, value);
+            ps.setLong(3, now);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            if (isConstraintViolation(e)) {
+                throw new IllegalStateException("duplicate request key:" + key, e);
+            }
+            throw new IllegalStateException("Error insert request key:" + key, e);
+        }
+        Transactions.afterCommit(() -> cache(storeKey, value, now + ttl));
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    private void cache(String key, String value, long expireAt) {
+        synchronized (cache) {
+            cache.put(key, new Entry(value, expireAt));
+        }
+    }
+
+    private void delete(Connection connection, String key) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("delete from " + table + " where KEY_ = ?")) {
+            ps.setString(1, key);
+            ps.executeUpdate();
+        }
+    }
+
+    private void clean() {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement ps = connection.prepareStatement("delete from " + table + " where CREATE_TIME_ < ?")) {
+            ps.setLong(1, System.currentTimeMillis() - ttl);
+            int deleted = ps.executeUpdate();
+            if (deleted > 0) {
+                logger.info("clean expired request keys:" + deleted);
+            }
+        } catch (Throwable e) {
+            logger.error("Error clean request keys", e);
+        }
+    }
+
+    private void createTable(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("create table " + table + " (KEY_ varchar(" + KEY_LENGTH + ") not null, VALUE_ varchar(255), CREATE_TIME_ bigint not null, "
+                + "primary key (KEY_))");
+            statement.execute("create index FLW_IDX_REQ_TIME on " + table + " (CREATE_TIME_)");
+        }
+        logger.info("create table " + table);
+    }
+
+    /**
+     * @param key
+     * @return 超过列宽的key替换为SHA-256摘要
+     */
+    static String storeKey(String key) {
+        if (key.length() <= KEY_LENGTH) {
+            return key;
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(HASH_PREFIX.length() + digest.length * 2).append(HASH_PREFIX);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 主键冲突：SQLState为23开头(完整性约束)，或驱动抛出SQLIntegrityConstraintViolationException
+     */
+    private static boolean isConstraintViolation(SQLException e) {
+        for (SQLException next = e; next != null; next = next.getNextException()) {
+            if (next instanceof SQLIntegrityConstraintViolationException || (next.getSQLState() != null && next.getSQLState().startsWith("23"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class Entry {
+        private final String value;
+        private final long expireAt;
+
+        private Entry(String value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+    }
+}
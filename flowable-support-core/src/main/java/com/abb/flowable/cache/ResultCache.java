@@ -0,0 +1,277 @@
+package com.abb.flowable.cache;
+
+import com.abb.flowable.domain.ResultDTO;
+import com.abb.flowable.domain.TaskDTO;
+import com.abb.flowable.domain.VariableMap;
+import com.abb.flowable.utils.Transactions;
+import org.flowable.engine.common.api.delegate.event.FlowableEngineEventType;
+import org.flowable.engine.common.api.delegate.event.FlowableEntityEvent;
+import org.flowable.engine.common.api.delegate.event.FlowableEvent;
+import org.flowable.engine.common.api.delegate.event.FlowableEventListener;
+import org.flowable.engine.runtime.ProcessInstance;
+import org.flowable.identitylink.api.IdentityLink;
+import org.flowable.identitylink.service.IdentityLinkType;
+import org.flowable.task.api.Task;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * query结果缓存，LRU淘汰，由引擎事件在事务提交后按用户失效
+ * <p>
+ * 失效的用户：任务的assignee和候选人、流程发起人，以及缓存结果中包含该任务/流程实例的用户。
+ * 候选组变化时无法确定用户，清空全部。其他情况（如变量变化使流程新满足某个过滤条件）依赖ttl。
+ * 写入和读取时都复制TaskDTO及其变量Map，调用方修改返回的结果不影响缓存。事件只来自本JVM，适用于单节点部署。
+ *
+ * @author cenpeng.lwm
+ * @since 2026/10/17
+ */
+public class ResultCache implements FlowableEventListener {
+    public static final FlowableEngineEventType[] EVENT_TYPES = {FlowableEngineEventType.TASK_CREATED, FlowableEngineEventType.TASK_ASSIGNED,
+        FlowableEngineEventType.TASK_COMPLETED, FlowableEngineEventType.PROCESS_STARTED, FlowableEngineEventType.PROCESS_COMPLETED,
+        FlowableEngineEventType.ENTITY_CREATED, FlowableEngineEventType.ENTITY_DELETED};
+    private static final int STRIPES = 1024;
+    private final long ttl;
+    private final int maxSize;
+    private final Map<String, Entry> entries;
+    private final Map<String, Set<String>> userKeys = new HashMap<>();
+    /**
+     * 任务id或流程实例id -> 包含它的缓存结果
+     */
+    private final Map<String, Set<Entry>> readers = new HashMap<>();
+    /**
+     * 按userId分段的失效版本号，失效前开始的查询结果不再写入缓存；分段冲突只会多一些未命中
+     */
+    private final AtomicLongArray generations = new AtomicLongArray(STRIPES);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public ResultCache(long ttl, int maxSize) {
+        this.ttl = ttl;
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() <= ResultCache.this.maxSize) {
+                    return false;
+                }
+                evictions.increment();
+                unlink(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    public long generation(String userId) {
+        return generations.get(stripe(userId));
+    }
+
+    public synchronized ResultDTO<List<TaskDTO>> get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null || entry.expireAt < System.currentTimeMillis()) {
+            if (entry != null) {
+                remove(key);
+            }
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return copy(entry.result);
+    }
+
+    public synchronized void put(String key, String userId, long generation, ResultDTO<List<TaskDTO>> result) {
+        if (generation != generation(userId)) {
+            return;
+        }
+        remove(key);
+        Entry entry = new Entry(key, userId, copy(result), System.currentTimeMillis() + ttl);
+        entries.put(key, entry);
+        userKeys.computeIfAbsent(userId, k -> new HashSet<>()).add(key);
+        entry.ids.forEach(id -> readers.computeIfAbsent(id, k -> new HashSet<>()).add(entry));
+    }
+
+    public synchronized void invalidate(String userId) {
+        if (userId == null) {
+            return;
+        }
+        generations.incrementAndGet(stripe(userId));
+        Set<String> keys = userKeys.remove(userId);
+        if (keys != null) {
+            invalidations.increment();
+            new ArrayList<>(keys).forEach(this::remove);
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        for (int i = 0; i < STRIPES; i++) {
+            generations.incrementAndGet(i);
+        }
+        invalidations.add(entries.size());
+        entries.clear();
+        userKeys.clear();
+        readers.clear();
+    }
+
+    /**
+     * 失效包含该任务或流程实例的结果，以及指定的用户
+     */
+    private synchronized void touch(Collection<String> ids, Collection<String> userIds) {
+        Set<String> users = new HashSet<>(userIds);
+        ids.forEach(id -> {
+            Set<Entry> set = readers.get(id);
+            if (set != null) {
+                set.forEach(entry -> users.add(entry.userId));
+            }
+        });
+        users.forEach(this::invalidate);
+    }
+
+    @Override
+    public void onEvent(FlowableEvent event) {
+        if (!(event instanceof FlowableEntityEvent)) {
+            return;
+        }
+        Object entity = ((FlowableEntityEvent)event).getEntity();
+        if (entity instanceof Task) {
+            Task task = (Task)entity;
+            List<String> ids = Arrays.asList(task.getId(), task.getProcessInstanceId());
+            List<String> users = task.getAssignee() == null ? Collections.emptyList() : Collections.singletonList(task.getAssignee());
+            Transactions.afterCommit(() -> touch(ids, users));
+        } else if (entity instanceof ProcessInstance) {
+            ProcessInstance process = (ProcessInstance)entity;
+            List<String> users = process.getStartUserId() == null ? Collections.emptyList() : Collections.singletonList(process.getStartUserId());
+            Transactions.afterCommit(() -> touch(Collections.singletonList(process.getProcessInstanceId()), users));
+        } else if (entity instanceof IdentityLink) {
+            IdentityLink link = (IdentityLink)entity;
+            if (link.getTaskId() == null || !IdentityLinkType.CANDIDATE.equals(link.getType())) {
+                return;
+            }
+            if (link.getGroupId() != null) {
+                Transactions.afterCommit(this::invalidateAll);
+            } else if (link.getUserId() != null) {
+                Transactions.afterCommit(() -> touch(Collections.singletonList(link.getTaskId()), Collections.singletonList(link.getUserId())));
+            }
+        }
+    }
+
+    @Override
+    public boolean isFailOnException() {
+        return false;
+    }
+
+    @Override
+    public boolean isFireOnTransactionLifecycleEvent() {
+        return false;
+    }
+
+    @Override
+    public String getOnTransaction() {
+        return null;
+    }
+
+    private void remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            unlink(entry);
+        }
+    }
+
+    private void unlink(Entry entry) {
+        Set<String> keys = userKeys.get(entry.userId);
+        if (keys != null) {
+            keys.remove(entry.key);
+            if (keys.isEmpty()) {
+                userKeys.remove(entry.userId);
+            }
+        }
+        entry.ids.forEach(id -> {
+            Set<Entry> set = readers.get(id);
+            if (set != null) {
+                set.remove(entry);
+                if (set.isEmpty()) {
+                    readers.remove(id);
+                }
+            }
+        });
+    }
+
+    private static ResultDTO<List<TaskDTO>> copy(ResultDTO<List<TaskDTO>> result) {
+        List<TaskDTO> list = new ArrayList<>(result.getData().size());
+        result.getData().forEach(task -> list.add(copy(task)));
+        return ResultDTO.<List<TaskDTO>>buildSuccess(list, result.getTotal()).setTotalEstimated(result.isTotalEstimated()).setCursor(result.getCursor());
+    }
+
+    /**
+     * 变量复制为VariableMap，未加载的值仍然延迟加载
+     */
+    private static TaskDTO copy(TaskDTO task) {
+        TaskDTO copy = new TaskDTO();
+        copy.setTaskId(task.getTaskId());
+        copy.setProcessInstanceId(task.getProcessInstanceId());
+        copy.setProcessDefinitionId(task.getProcessDefinitionId());
+        copy.setTaskDefinitionKey(task.getTaskDefinitionKey());
+        copy.setFormKey(task.getFormKey());
+        copy.setAssignee(task.getAssignee());
+        copy.setAssigneeName(task.getAssigneeName());
+        copy.setUserId(task.getUserId());
+        copy.setUserName(task.getUserName());
+        copy.setTitle(task.getTitle());
+        copy.setDescription(task.getDescription());
+        copy.setState(task.getState());
+        copy.setStartTime(task.getStartTime() == null ? null : new Date(task.getStartTime().getTime()));
+        copy.setEndTime(task.getEndTime() == null ? null : new Date(task.getEndTime().getTime()));
+        copy.setDurationInMillis(task.getDurationInMillis());
+        copy.setVariables(task.getVariables() == null ? null : new VariableMap(task.getVariables()));
+        return copy;
+    }
+
+    private static int stripe(String userId) {
+        return (userId.hashCode() & 0x7fffffff) % STRIPES;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public long getInvalidationCount() {
+        return invalidations.sum();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private static class Entry {
+        private final String key;
+        private final String userId;
+        private final ResultDTO<List<TaskDTO>> result;
+        private final long expireAt;
+        private final Set<String> ids = new HashSet<>();
+
+        private Entry(String key, String userId, ResultDTO<List<TaskDTO>> result, long expireAt) {
+            this.key = key;
+            this.userId = userId;
+            this.result = result;
+            this.expireAt = expireAt;
+            result.getData().forEach(taskDTO -> {
+                if (taskDTO.getTaskId() != null) {
+                    ids.add(taskDTO.getTaskId());
+                }
+                if (taskDTO.getProcessInstanceId() != null) {
+                    ids.add(taskDTO.getProcessInstanceId());
+                }
+            });
+        }
+    }
+}
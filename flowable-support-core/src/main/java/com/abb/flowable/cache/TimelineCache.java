@@ -0,0 +1,246 @@
+package com.abb.flowable.cache;
+
+import com.abb.flowable.domain.LayeredMap;
+import com.abb.flowable.domain.Options;
+import com.abb.flowable.domain.ProcessNodeDTO;
+import com.abb.flowable.domain.VariableMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 已结束流程实例的getByInstanceId结果缓存，结束后的节点和变量不会再变化，不需要失效
+ * <p>
+ * 内存按权重(节点数+变量数)LRU淘汰，配置了目录时淘汰的结果序列化到磁盘，磁盘按总字节数淘汰最早写入的文件。
+ * 启动时清空目录。写入和读取时都复制ProcessNodeDTO，变量以共享的缓存Map为下层，调用方修改返回的结果不影响缓存。
+ *
+ * @author cenpeng.lwm
+ * @since 2026/10/17
+ */
+public class TimelineCache {
+    private static final Logger logger = LoggerFactory.getLogger(TimelineCache.class);
+    private final long maxWeight;
+    private final File directory;
+    private final long maxDiskBytes;
+    private final LinkedHashMap<String, Entry> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Long> disk = new LinkedHashMap<>();
+    private long weight;
+    private long diskBytes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param maxWeight    内存中最多缓存的节点数+变量数
+     * @param directory    溢出目录，为null时不写磁盘
+     * @param maxDiskBytes 溢出文件总大小上限
+     */
+    public TimelineCache(long maxWeight, File directory, long maxDiskBytes) {
+        this.maxWeight = maxWeight;
+        this.directory = directory;
+        this.maxDiskBytes = maxDiskBytes;
+        if (directory != null) {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IllegalStateException("can not create directory:" + directory);
+            }
+            File[] files = directory.listFiles((dir, name) -> name.endsWith(".timeline"));
+            if (files != null) {
+                Arrays.stream(files).forEach(File::delete);
+            }
+        }
+    }
+
+    public static String key(String processInstanceId, Options options) {
+        return processInstanceId + '|' + options.isWithVariables() + '|' + options.isReplaceLocalVariables() + '|' + options.isWithFormKey() + '|'
+            + (options.getVariableNames() == null ? "" : new TreeSet<>(options.getVariableNames()).toString());
+    }
+
+    public List<ProcessNodeDTO> get(String key) {
+        synchronized (this) {
+            Entry entry = memory.get(key);
+            if (entry != null) {
+                hits.increment();
+                return copy(entry.nodes);
+            }
+            if (!disk.containsKey(key)) {
+                misses.increment();
+                return null;
+            }
+        }
+        List<ProcessNodeDTO> nodes = read(key);
+        if (nodes == null) {
+            misses.increment();
+            return null;
+        }
+        diskHits.increment();
+        // put复制后缓存，读出的节点可以直接返回
+        put(key, nodes);
+        return nodes;
+    }
+
+    public void put(String key, List<ProcessNodeDTO> nodes) {
+        Entry entry = new Entry(copy(nodes));
+        if (entry.weight > maxWeight) {
+            return;
+        }
+        List<Map.Entry<String, Entry>> evicted = new ArrayList<>();
+        synchronized (this) {
+            Entry old = memory.put(key, entry);
+            weight += entry.weight - (old == null ? 0 : old.weight);
+            Iterator<Map.Entry<String, Entry>> iterator = memory.entrySet().iterator();
+            while (weight > maxWeight && iterator.hasNext()) {
+                Map.Entry<String, Entry> eldest = iterator.next();
+                iterator.remove();
+                weight -= eldest.getValue().weight;
+                if (directory != null && !disk.containsKey(eldest.getKey())) {
+                    evicted.add(eldest);
+                }
+            }
+        }
+        evicted.forEach(eldest -> write(eldest.getKey(), eldest.getValue().nodes));
+    }
+
+    private List<ProcessNodeDTO> read(String key) {
+        File file = file(key);
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            @SuppressWarnings("unchecked")
+            List<ProcessNodeDTO> nodes = (List<ProcessNodeDTO>)in.readObject();
+            return nodes;
+        } catch (Throwable e) {
+            logger.warn("Error read timeline:" + file, e);
+            synchronized (this) {
+                Long size = disk.remove(key);
+                diskBytes -= size == null ? 0 : size;
+            }
+            // 损坏或不兼容的文件不再保留，下次读取时重新查询
+            file.delete();
+            return null;
+        }
+    }
+
+    private void write(String key, List<ProcessNodeDTO> nodes) {
+        File file = file(key);
+        try {
+            try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+                out.writeObject(nodes);
+            }
+            List<String> removed = new ArrayList<>();
+            synchronized (this) {
+                Long old = disk.put(key, file.length());
+                diskBytes += file.length() - (old == null ? 0 : old);
+                Iterator<Map.Entry<String, Long>> iterator = disk.entrySet().iterator();
+                while (diskBytes > maxDiskBytes && iterator.hasNext()) {
+                    Map.Entry<String, Long> eldest = iterator.next();
+                    if (eldest.getKey().equals(key)) {
+                        continue;
+                    }
+                    iterator.remove();
+                    diskBytes -= eldest.getValue();
+                    removed.add(eldest.getKey());
+                }
+            }
+            removed.forEach(k -> file(k).delete());
+        } catch (IOException e) {
+            logger.warn("Error write timeline:" + file, e);
+            file.delete();
+        }
+    }
+
+    private static List<ProcessNodeDTO> copy(List<ProcessNodeDTO> nodes) {
+        List<ProcessNodeDTO> list = new ArrayList<>(nodes.size());
+        nodes.forEach(node -> list.add(copy(node)));
+        return list;
+    }
+
+    /**
+     * 变量不逐个复制：LayeredMap只复制私有层，共享的流程变量层不复制；未加载的值仍然延迟加载
+     */
+    private static ProcessNodeDTO copy(ProcessNodeDTO node) {
+        ProcessNodeDTO copy = new ProcessNodeDTO();
+        copy.setId(node.getId());
+        copy.setActivityId(node.getActivityId());
+        copy.setActivityName(node.getActivityName());
+        copy.setActivityType(node.getActivityType());
+        copy.setExecutionId(node.getExecutionId());
+        copy.setTaskId(node.getTaskId());
+        copy.setProcessInstanceId(node.getProcessInstanceId());
+        copy.setProcessDefinitionId(node.getProcessDefinitionId());
+        copy.setDeleteReason(node.getDeleteReason());
+        copy.setFormKey(node.getFormKey());
+        copy.setStartEvent(node.isStartEvent());
+        copy.setInitiator(node.getInitiator());
+        copy.setSkipped(node.isSkipped());
+        copy.setAssignee(node.getAssignee());
+        copy.setAssigneeName(node.getAssigneeName());
+        copy.setUserId(node.getUserId());
+        copy.setUserName(node.getUserName());
+        copy.setTitle(node.getTitle());
+        copy.setDescription(node.getDescription());
+        copy.setState(node.getState());
+        copy.setStartTime(node.getStartTime() == null ? null : new Date(node.getStartTime().getTime()));
+        copy.setEndTime(node.getEndTime() == null ? null : new Date(node.getEndTime().getTime()));
+        copy.setDurationInMillis(node.getDurationInMillis());
+        copy.setVariables(copy(node.getVariables()));
+        return copy;
+    }
+
+    private static Map<String, Object> copy(Map<String, Object> variables) {
+        if (variables == null) {
+            return null;
+        }
+        return variables instanceof LayeredMap ? new LayeredMap((LayeredMap)variables) : new VariableMap(variables);
+    }
+
+    private File file(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder(digest.length * 2 + 9);
+            for (byte b : digest) {
+                name.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return new File(directory, name.append(".timeline").toString());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getDiskHitCount() {
+        return diskHits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    public synchronized long getDiskBytes() {
+        return diskBytes;
+    }
+
+    private static class Entry {
+        private final List<ProcessNodeDTO> nodes;
+        private final long weight;
+
+        private Entry(List<ProcessNodeDTO> nodes) {
+            this.nodes = nodes;
+            long w = nodes.size();
+            for (ProcessNodeDTO node : nodes) {
+                w += node.getVariables() == null ? 0 : node.getVariables().size();
+            }
+            this.weight = Math.max(1, w);
+        }
+    }
+}
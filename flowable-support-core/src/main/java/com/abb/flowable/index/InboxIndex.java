@@ -0,0 +1,292 @@
+package com.abb.flowable.index;
+
+import com.abb.flowable.domain.TaskQuery;
+import com.abb.flowable.utils.Transactions;
+import org.flowable.engine.common.api.delegate.event.FlowableEngineEventType;
+import org.flowable.engine.common.api.delegate.event.FlowableEntityEvent;
+import org.flowable.engine.common.api.delegate.event.FlowableEvent;
+import org.flowable.engine.common.api.delegate.event.FlowableEventListener;
+import org.flowable.engine.common.api.delegate.event.FlowableEventType;
+import org.flowable.identitylink.api.IdentityLink;
+import org.flowable.identitylink.service.IdentityLinkType;
+import org.flowable.task.api.Task;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Function;
+
+/**
+ * 待办内存索引：userId/候选组 -> 按创建时间倒序的运行时任务，由引擎事件在事务提交后维护
+ * <p>
+ * 与taskCandidateOrAssigned一致：有assignee时只对assignee可见，否则对candidate用户和candidate组的成员可见。
+ * 存在候选组的任务时，查询先取用户所在的组再合并组的待办。索引只感知本JVM内的引擎事件，适用于单节点部署。
+ *
+ * @author cenpeng.lwm
+ * @since 2026/10/17
+ */
+public class InboxIndex implements FlowableEventListener {
+    public static final FlowableEngineEventType[] EVENT_TYPES = {FlowableEngineEventType.TASK_CREATED, FlowableEngineEventType.TASK_ASSIGNED,
+        FlowableEngineEventType.TASK_COMPLETED, FlowableEngineEventType.ENTITY_CREATED, FlowableEngineEventType.ENTITY_UPDATED,
+        FlowableEngineEventType.ENTITY_DELETED};
+    private static final int MAX_REMOVED = 10000;
+    private static final int REBUILD_PAGE_SIZE = 1000;
+    private static final Logger logger = LoggerFactory.getLogger(InboxIndex.class);
+    private final ConcurrentHashMap<String, NavigableSet<TaskSummary>> inbox = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, NavigableSet<TaskSummary>> groupInbox = new ConcurrentHashMap<>();
+    private final Map<String, TaskSummary> tasks = new HashMap<>();
+    private final Map<String, Set<String>> candidates = new HashMap<>();
+    private final Map<String, Set<String>> candidateGroups = new HashMap<>();
+    private final Map<String, Set<String>> owners = new HashMap<>();
+    private final Map<String, Set<String>> groupOwners = new HashMap<>();
+    private final Function<String, Collection<String>> groupsOfUser;
+    /**
+     * 最近删除的任务，避免迟到的事件或重建时读到的旧数据把任务加回来
+     */
+    private final Map<String, Boolean> removed = new LinkedHashMap<String, Boolean>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > MAX_REMOVED;
+        }
+    };
+    private volatile boolean ready;
+
+    /**
+     * @param groupsOfUser userId -> 所在的组，只在存在候选组任务时调用
+     */
+    public InboxIndex(Function<String, Collection<String>> groupsOfUser) {
+        this.groupsOfUser = groupsOfUser;
+    }
+
+    /**
+     * 启动时全量加载，需在注册事件监听之后调用；任务按ID_分页读取摘要字段，不加载完整的任务实体
+     * <p>
+     * select TASK_ID_, USER_ID_, GROUP_ID_ from ACT_RU_IDENTITYLINK where TASK_ID_ is not null and TYPE_ = 'candidate'
+     * <p>
+     * select ID_, PROC_INST_ID_, PROC_DEF_ID_, TASK_DEF_KEY_, FORM_KEY_, ASSIGNEE_, CREATE_TIME_ from ACT_RU_TASK [where ID_ > ?] order by ID_
+     *
+     * @param dataSource
+     * @param tablePrefix
+     */
+    public void rebuild(DataSource dataSource, String tablePrefix) throws SQLException {
+        String prefix = tablePrefix == null ? "" : tablePrefix;
+        int count = 0;
+        try (Connection connection = dataSource.getConnection()) {
+            try (PreparedStatement ps = connection.prepareStatement("select TASK_ID_, USER_ID_, GROUP_ID_ from " + prefix
+                + "ACT_RU_IDENTITYLINK where TASK_ID_ is not null and TYPE_ = ?")) {
+                ps.setString(1, IdentityLinkType.CANDIDATE);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        addCandidate(rs.getString(1), rs.getString(2), rs.getString(3));
+                    }
+                }
+            }
+            String sql = "select ID_, PROC_INST_ID_, PROC_DEF_ID_, TASK_DEF_KEY_, FORM_KEY_, ASSIGNEE_, CREATE_TIME_ from " + prefix + "ACT_RU_TASK";
+            String last = null;
+            for (int rows = REBUILD_PAGE_SIZE; rows == REBUILD_PAGE_SIZE; count += rows) {
+                rows = 0;
+                try (PreparedStatement ps = connection.prepareStatement(sql + (last == null ? "" : " where ID_ > ?") + " order by ID_")) {
+                    ps.setMaxRows(REBUILD_PAGE_SIZE);
+                    if (last != null) {
+                        ps.setString(1, last);
+                    }
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            last = rs.getString(1);
+                            Timestamp createTime = rs.getTimestamp(7);
+                            put(new TaskSummary(last, rs.getString(2), rs.getString(3), rs.getString(4), rs.getString(5), rs.getString(6),
+                                createTime == null ? null : new Date(createTime.getTime())));
+                            rows++;
+                        }
+                    }
+                }
+            }
+        }
+        ready = true;
+        logger.info("inbox index loaded, tasks:" + count);
+    }
+
+    /**
+     * 只有用户和流程key过滤时可以由索引查询
+     *
+     * @param query
+     * @return
+     */
+    public boolean accept(TaskQuery query) {
+        return ready && query.getUserId() != null && query.getInitiatorId() == null && query.getTitle() == null
+            && isEmpty(query.getProcessVariableValueEquals()) && isEmpty(query.getProcessVariableValueNotEquals());
+    }
+
+    /**
+     * 用户的待办(包括所在组的候选任务)，按创建时间倒序
+     *
+     * @param userId
+     * @param processDefinitionKey
+     * @return
+     */
+    public List<TaskSummary> list(String userId, String processDefinitionKey) {
+        List<NavigableSet<TaskSummary>> sets = new ArrayList<>();
+        NavigableSet<TaskSummary> own = inbox.get(userId);
+        if (own != null) {
+            sets.add(own);
+        }
+        if (!groupInbox.isEmpty()) {
+            for (String groupId : groupsOfUser.apply(userId)) {
+                NavigableSet<TaskSummary> set = groupInbox.get(groupId);
+                if (set != null) {
+                    sets.add(set);
+                }
+            }
+        }
+        if (sets.isEmpty()) {
+            return Collections.emptyList();
+        }
+        // 同一任务可能同时对用户和多个组可见
+        Collection<TaskSummary> all;
+        if (sets.size() == 1) {
+            all = sets.get(0);
+        } else {
+            all = new TreeSet<>(TaskSummary.ORDER);
+            sets.forEach(all::addAll);
+        }
+        List<TaskSummary> list = new ArrayList<>();
+        for (TaskSummary summary : all) {
+            if (processDefinitionKey == null || processDefinitionKey.equals(summary.getProcessDefinitionKey())) {
+                list.add(summary);
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void onEvent(FlowableEvent event) {
+        if (!(event instanceof FlowableEntityEvent)) {
+            return;
+        }
+        Object entity = ((FlowableEntityEvent)event).getEntity();
+        FlowableEventType type = event.getType();
+        if (entity instanceof Task) {
+            Task task = (Task)entity;
+            if (type == FlowableEngineEventType.TASK_COMPLETED || type == FlowableEngineEventType.ENTITY_DELETED) {
+                String taskId = task.getId();
+                Transactions.afterCommit(() -> remove(taskId));
+            } else {
+                TaskSummary summary = new TaskSummary(task);
+                Transactions.afterCommit(() -> put(summary));
+            }
+        } else if (entity instanceof IdentityLink) {
+            IdentityLink link = (IdentityLink)entity;
+            if (link.getTaskId() == null || !IdentityLinkType.CANDIDATE.equals(link.getType())) {
+                return;
+            }
+            if (type == FlowableEngineEventType.ENTITY_CREATED) {
+                Transactions.afterCommit(() -> addCandidate(link.getTaskId(), link.getUserId(), link.getGroupId()));
+            } else if (type == FlowableEngineEventType.ENTITY_DELETED) {
+                Transactions.afterCommit(() -> removeCandidate(link.getTaskId(), link.getUserId(), link.getGroupId()));
+            }
+        }
+    }
+
+    @Override
+    public boolean isFailOnException() {
+        return false;
+    }
+
+    @Override
+    public boolean isFireOnTransactionLifecycleEvent() {
+        return false;
+    }
+
+    @Override
+    public String getOnTransaction() {
+        return null;
+    }
+
+    private synchronized void put(TaskSummary summary) {
+        if (removed.containsKey(summary.getId())) {
+            return;
+        }
+        TaskSummary old = tasks.put(summary.getId(), summary);
+        reindex(summary.getId(), old, summary);
+    }
+
+    private synchronized void remove(String taskId) {
+        removed.put(taskId, Boolean.TRUE);
+        TaskSummary old = tasks.remove(taskId);
+        reindex(taskId, old, null);
+        candidates.remove(taskId);
+        candidateGroups.remove(taskId);
+    }
+
+    private synchronized void addCandidate(String taskId, String userId, String groupId) {
+        if (removed.containsKey(taskId)) {
+            return;
+        }
+        if (userId != null) {
+            candidates.computeIfAbsent(taskId, k -> new HashSet<>()).add(userId);
+        }
+        if (groupId != null) {
+            candidateGroups.computeIfAbsent(taskId, k -> new HashSet<>()).add(groupId);
+        }
+        TaskSummary summary = tasks.get(taskId);
+        reindex(taskId, summary, summary);
+    }
+
+    private synchronized void removeCandidate(String taskId, String userId, String groupId) {
+        if (userId != null && candidates.containsKey(taskId)) {
+            candidates.get(taskId).remove(userId);
+        }
+        if (groupId != null && candidateGroups.containsKey(taskId)) {
+            candidateGroups.get(taskId).remove(groupId);
+        }
+        TaskSummary summary = tasks.get(taskId);
+        reindex(taskId, summary, summary);
+    }
+
+    private void reindex(String taskId, TaskSummary old, TaskSummary summary) {
+        unindex(inbox, owners.remove(taskId), old);
+        unindex(groupInbox, groupOwners.remove(taskId), old);
+        if (summary == null) {
+            return;
+        }
+        Set<String> users = new HashSet<>();
+        Set<String> groups = new HashSet<>();
+        if (summary.getAssignee() != null) {
+            users.add(summary.getAssignee());
+        } else {
+            users.addAll(candidates.getOrDefault(taskId, Collections.emptySet()));
+            groups.addAll(candidateGroups.getOrDefault(taskId, Collections.emptySet()));
+        }
+        users.forEach(userId -> inbox.computeIfAbsent(userId, k -> new ConcurrentSkipListSet<>(TaskSummary.ORDER)).add(summary));
+        groups.forEach(groupId -> groupInbox.computeIfAbsent(groupId, k -> new ConcurrentSkipListSet<>(TaskSummary.ORDER)).add(summary));
+        owners.put(taskId, users);
+        groupOwners.put(taskId, groups);
+    }
+
+    private static void unindex(Map<String, NavigableSet<TaskSummary>> index, Set<String> keys, TaskSummary old) {
+        if (keys == null || old == null) {
+            return;
+        }
+        keys.forEach(key -> {
+            NavigableSet<TaskSummary> set = index.get(key);
+            if (set != null) {
+                set.remove(old);
+                if (set.isEmpty()) {
+                    index.remove(key, set);
+                }
+            }
+        });
+    }
+
+    private static boolean isEmpty(Map<?, ?> map) {
+        return map == null || map.isEmpty();
+    }
+}
@@ -0,0 +1,211 @@
+package com.abb.flowable.index;
+
+import com.abb.flowable.utils.Transactions;
+import org.flowable.bpmn.model.BpmnModel;
+import org.flowable.bpmn.model.FlowElement;
+import org.flowable.bpmn.model.Process;
+import org.flowable.bpmn.model.StartEvent;
+import org.flowable.bpmn.model.UserTask;
+import org.flowable.engine.RepositoryService;
+import org.flowable.engine.common.api.delegate.event.FlowableEngineEventType;
+import org.flowable.engine.common.api.delegate.event.FlowableEntityEvent;
+import org.flowable.engine.common.api.delegate.event.FlowableEvent;
+import org.flowable.engine.common.api.delegate.event.FlowableEventListener;
+import org.flowable.engine.repository.ProcessDefinition;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 流程定义的节点索引：processDefinitionId + activityId -> formKey、name、type，以及processDefinitionKey -> 最新版本
+ * <p>
+ * 流程定义部署后不会变化，节点索引不失效；最新版本在本JVM部署新版本时失效，其他节点的部署依赖ttl
+ *
+ * @author cenpeng.lwm
+ * @since 2026/10/17
+ */
+public class ProcessDefinitionIndex implements FlowableEventListener {
+    public static final FlowableEngineEventType[] EVENT_TYPES = {FlowableEngineEventType.ENTITY_CREATED};
+    private final RepositoryService repositoryService;
+    private final long latestTtl;
+    private final ConcurrentHashMap<String, Definition> definitions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Latest> latest = new ConcurrentHashMap<>();
+
+    public ProcessDefinitionIndex(RepositoryService repositoryService, long latestTtl) {
+        this.repositoryService = repositoryService;
+        this.latestTtl = latestTtl;
+    }
+
+    /**
+     * 用启动时已解析的模型预先建立索引，不再从引擎加载BpmnModel
+     *
+     * @param models deploymentId -> 部署的模型
+     */
+    public void index(Map<String, BpmnModel> models) {
+        if (models.isEmpty()) {
+            return;
+        }
+        repositoryService.createProcessDefinitionQuery().deploymentIds(new HashSet<>(models.keySet())).list().forEach(definition -> {
+            Process process = models.get(definition.getDeploymentId()).getProcessById(definition.getKey());
+            if (process != null) {
+                definitions.putIfAbsent(definition.getId(), new Definition(process));
+            }
+        });
+    }
+
+    /**
+     * 最新版本的processDefinitionId
+     *
+     * @param processDefinitionKey
+     * @return
+     */
+    public String latest(String processDefinitionKey) {
+        Latest entry = latest.get(processDefinitionKey);
+        if (entry == null || entry.expireAt < System.currentTimeMillis()) {
+            ProcessDefinition definition = repositoryService.createProcessDefinitionQuery().processDefinitionKey(processDefinitionKey).latestVersion().singleResult();
+            if (definition == null) {
+                return null;
+            }
+            entry = new Latest(definition.getId(), System.currentTimeMillis() + latestTtl);
+            latest.put(processDefinitionKey, entry);
+        }
+        return entry.processDefinitionId;
+    }
+
+    public Activity getActivity(String processDefinitionId, String activityId) {
+        return get(processDefinitionId).activities.get(activityId);
+    }
+
+    public String getStartFormKey(String processDefinitionId) {
+        Activity start = get(processDefinitionId).start;
+        return start == null ? null : start.getFormKey();
+    }
+
+    public String getFormKey(String processDefinitionId, String activityId) {
+        Activity activity = getActivity(processDefinitionId, activityId);
+        return activity == null ? null : activity.getFormKey();
+    }
+
+    /**
+     * 模型在computeIfAbsent之外加载，加载较慢时不阻塞其他定义的读取；并发加载同一个定义时保留先放入的
+     */
+    private Definition get(String processDefinitionId) {
+        Definition definition = definitions.get(processDefinitionId);
+        if (definition != null) {
+            return definition;
+        }
+        // 一个文件可以包含多个流程，按定义的key取对应的流程而不是主流程
+        String key = repositoryService.getProcessDefinition(processDefinitionId).getKey();
+        definition = new Definition(repositoryService.getBpmnModel(processDefinitionId).getProcessById(key));
+        Definition existing = definitions.putIfAbsent(processDefinitionId, definition);
+        return existing == null ? definition : existing;
+    }
+
+    @Override
+    public void onEvent(FlowableEvent event) {
+        if (event instanceof FlowableEntityEvent && ((FlowableEntityEvent)event).getEntity() instanceof ProcessDefinition) {
+            String key = ((ProcessDefinition)((FlowableEntityEvent)event).getEntity()).getKey();
+            Transactions.afterCommit(() -> latest.remove(key));
+        }
+    }
+
+    @Override
+    public boolean isFailOnException() {
+        return false;
+    }
+
+    @Override
+    public boolean isFireOnTransactionLifecycleEvent() {
+        return false;
+    }
+
+    @Override
+    public String getOnTransaction() {
+        return null;
+    }
+
+    private static class Definition {
+        private final Map<String, Activity> activities;
+        private final Activity start;
+
+        private Definition(Process process) {
+            Map<String, Activity> map = new HashMap<>();
+            for (FlowElement element : process.findFlowElementsOfType(FlowElement.class, true)) {
+                map.put(element.getId(), new Activity(element));
+            }
+            StartEvent initial = initial(process);
+            this.start = initial == null ? null : map.get(initial.getId());
+            this.activities = Collections.unmodifiableMap(map);
+        }
+
+        /**
+         * 与引擎StartEventParseHandler的选择一致：顶层的空开始事件优先，否则取第一个顶层开始事件。
+         * BpmnXMLConverter解析的模型不设置process.getInitialFlowElement()，不能依赖它
+         */
+        private static StartEvent initial(Process process) {
+            StartEvent first = null;
+            for (StartEvent startEvent : process.findFlowElementsOfType(StartEvent.class, false)) {
+                if (startEvent.getEventDefinitions().isEmpty()) {
+                    return startEvent;
+                }
+                if (first == null) {
+                    first = startEvent;
+                }
+            }
+            return first;
+        }
+    }
+
+    private static class Latest {
+        private final String processDefinitionId;
+        private final long expireAt;
+
+        private Latest(String processDefinitionId, long expireAt) {
+            this.processDefinitionId = processDefinitionId;
+            this.expireAt = expireAt;
+        }
+    }
+
+    public static class Activity {
+        private final String id;
+        private final String name;
+        private final String type;
+        private final String formKey;
+
+        private Activity(FlowElement element) {
+            this.id = element.getId();
+            this.name = element.getName();
+            String simpleName = element.getClass().getSimpleName();
+            this.type = Character.toLowerCase(simpleName.charAt(0)) + simpleName.substring(1);
+            if (element instanceof UserTask) {
+                this.formKey = ((UserTask)element).getFormKey();
+            } else if (element instanceof StartEvent) {
+                this.formKey = ((StartEvent)element).getFormKey();
+            } else {
+                this.formKey = null;
+            }
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * 与ACT_HI_ACTINST.ACT_TYPE_一致，如startEvent、userTask
+         */
+        public String getType() {
+            return type;
+        }
+
+        public String getFormKey() {
+            return formKey;
+        }
+    }
+}
@@ -0,0 +1,482 @@
+package com.abb.flowable.index;
+
+import com.abb.flowable.domain.ResultDTO;
+import com.abb.flowable.domain.TaskDTO;
+import com.abb.flowable.domain.TaskQuery;
+import com.abb.flowable.service.impl.VariableLoader;
+import com.abb.flowable.utils.Constants;
+import com.abb.flowable.utils.Converter;
+import com.abb.flowable.utils.NamedThreadFactory;
+import com.abb.flowable.utils.PageCursor;
+import com.abb.flowable.utils.Tables;
+import com.abb.flowable.utils.Transactions;
+import org.flowable.engine.HistoryService;
+import org.flowable.engine.common.api.delegate.event.FlowableEngineEventType;
+import org.flowable.engine.common.api.delegate.event.FlowableEntityEvent;
+import org.flowable.engine.common.api.delegate.event.FlowableEvent;
+import org.flowable.engine.common.api.delegate.event.FlowableEventListener;
+import org.flowable.engine.history.HistoricProcessInstance;
+import org.flowable.engine.runtime.Execution;
+import org.flowable.task.api.TaskInfo;
+import org.flowable.task.api.history.HistoricTaskInstance;
+import org.flowable.variable.api.history.HistoricVariableInstance;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.*;
+import java.util.*;
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 发起/处理过列表的读模型：每个流程实例(KIND_=P)和每个历史任务(KIND_=T)一行，只保存列表展示的字段
+ * <p>
+ * 引擎事件在事务提交后登记受影响的流程实例，由后台线程从历史表重新读取并整体替换该流程实例的行，数据最终一致。
+ * <p>
+ * select * from FLW_TASK_SUMMARY where KIND_ = ? and OWNER_ID_ = ? order by START_TIME_ desc, ID_ desc
+ *
+ * @author cenpeng.lwm
+ * @since 2026/10/17
+ */
+public class SummaryReadModel implements FlowableEventListener {
+    public static final FlowableEngineEventType[] EVENT_TYPES = {FlowableEngineEventType.PROCESS_STARTED, FlowableEngineEventType.PROCESS_COMPLETED,
+        FlowableEngineEventType.TASK_CREATED, FlowableEngineEventType.TASK_ASSIGNED, FlowableEngineEventType.TASK_COMPLETED,
+        FlowableEngineEventType.ENTITY_DELETED};
+    private static final String KIND_PROCESS = "P";
+    private static final String KIND_TASK = "T";
+    private static final int TITLE_LENGTH = 1000;
+    private static final int REBUILD_PAGE = 500;
+    private static final List<String> VARIABLE_NAMES = Arrays.asList(Constants.TASK_TITLE, Constants.TASK_INITIATOR_ID, Constants.TASK_USER_ID,
+        Constants.TASK_USER_NAME, Constants.TASK_ASSIGNEE_NAME);
+    private static final String COLUMNS = "ID_, KIND_, PROC_INST_ID_, PROC_DEF_ID_, PROC_DEF_KEY_, OWNER_ID_, TITLE_, INITIATOR_ID_, USER_ID_, "
+        + "USER_NAME_, ASSIGNEE_, ASSIGNEE_NAME_, START_TIME_, END_TIME_, DURATION_";
+    private static final Logger logger = LoggerFactory.getLogger(SummaryReadModel.class);
+    private final DataSource dataSource;
+    private final HistoryService historyService;
+    private final VariableLoader variableLoader;
+    private final String table;
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private final ExecutorService executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+        new NamedThreadFactory("flow-summary-"));
+    private volatile boolean ready;
+
+    public SummaryReadModel(DataSource dataSource, HistoryService historyService, VariableLoader variableLoader, String tablePrefix) {
+        this.dataSource = dataSource;
+        this.historyService = historyService;
+        this.variableLoader = variableLoader;
+        this.table = (tablePrefix == null ? "" : tablePrefix) + "FLW_TASK_SUMMARY";
+    }
+
+    /**
+     * 表为空或rebuild时在后台回填历史数据，回填完成前查询不走读模型
+     *
+     * @param rebuild     表中已有数据时也重新回填
+     * @param createTable 表不存在时自动建表，否则需先执行{@link Tables#CREATE_SCRIPT}
+     * @throws SQLException
+     */
+    public void init(boolean rebuild, boolean createTable) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            if (!Tables.exists(connection, table)) {
+                if (!createTable) {
+                    throw Tables.notFound(table);
+                }
+                createTable(connection);
+            } else if (!rebuild && !isEmpty(connection)) {
+                ready = true;
+                return;
+            }
+        }
+        executor.execute(this::rebuild);
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 只有内置字段过滤时可以由读模型查询
+     *
+     * @param query
+     * @return
+     */
+    public boolean accept(TaskQuery query) {
+        return ready && query.getUserId() != null && (query.getProcessVariableValueEquals() == null || query.getProcessVariableValueEquals().isEmpty())
+            && (query.getProcessVariableValueNotEquals() == null || query.getProcessVariableValueNotEquals().isEmpty());
+    }
+
+    /**
+     * INITIATE查询KIND_=P，PROCESSED查询KIND_=T，不加载变量
+     *
+     * @param query
+     * @param titleMatches 标题索引命中的processInstanceId，为null时使用TITLE_ like
+     * @return
+     * @throws SQLException
+     */
+    public ResultDTO<List<TaskDTO>> query(TaskQuery query, Set<String> titleMatches) throws SQLException {
+        String kind = query.getType() == TaskQuery.TYPE.INITIATE ? KIND_PROCESS : KIND_TASK;
+        StringBuilder where = new StringBuilder(" where KIND_ = ?");
+        List<Object> params = new ArrayList<>();
+        params.add(kind);
+        filter(query, titleMatches, where, params);
+        if (query.getState() == TaskQuery.STATE.FINISHED) {
+            where.append(" and END_TIME_ is not null");
+        } else if (query.getState() == TaskQuery.STATE.UNFINISHED) {
+            where.append(" and END_TIME_ is null");
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            int total = 0;
+            boolean estimated = false;
+            if (query.isNeedTotal()) {
+                if (query.getTotalLimit() > 0 && countUpTo(connection, where.toString(), params, query.getTotalLimit() + 1) > query.getTotalLimit()) {
+                    total = query.getTotalLimit();
+                    estimated = true;
+                } else {
+                    total = count(connection, where.toString(), params);
+                }
+            }
+            if (query.getLimit() <= 0) {
+                // 与listPage(start, 0)一致，只返回总数
+                return ResultDTO.<List<TaskDTO>>buildSuccess(new ArrayList<>(), total).setTotalEstimated(estimated);
+            }
+            PageCursor cursor = PageCursor.decode(query.getCursor());
+            int skip = query.getStart();
+            if (cursor != null) {
+                where.append(" and (START_TIME_ < ? or (START_TIME_ = ? and ID_ < ?))");
+                params.add(new Timestamp(cursor.getTime()));
+                params.add(new Timestamp(cursor.getTime()));
+                params.add(cursor.getId());
+                skip = 0;
+            }
+            List<TaskDTO> list = new ArrayList<>();
+            String last = null;
+            Date lastTime = null;
+            String sql = "select " + COLUMNS + " from " + table + where + " order by START_TIME_ desc, ID_ desc";
+            try (PreparedStatement ps = prepare(connection, sql, params)) {
+                ps.setMaxRows((int)Math.min((long)skip + query.getLimit(), Integer.MAX_VALUE));
+                try (ResultSet rs = ps.executeQuery()) {
+                    int row = 0;
+                    while (rs.next()) {
+                        if (row++ < skip) {
+                            continue;
+                        }
+                        TaskDTO taskDTO = convert(rs);
+                        list.add(taskDTO);
+                        last = rs.getString("ID_");
+                        lastTime = taskDTO.getStartTime();
+                    }
+                }
+            }
+            String next = list.isEmpty() || list.size() < query.getLimit() ? null : PageCursor.encode(lastTime, last);
+            return ResultDTO.buildSuccess(list, total).setTotalEstimated(estimated).setCursor(next);
+        }
+    }
+
+    /**
+     * 一条分组查询统计发起和处理过的数量，忽略query的type和state
+     * <p>
+     * select KIND_, case when END_TIME_ is null then 0 else 1 end, count(*) from FLW_TASK_SUMMARY where KIND_ in ('P', 'T') and OWNER_ID_ = ? group by ...
+     *
+     * @param query
+     * @param titleMatches
+     * @return INITIATE/PROCESSED -> [未结束, 已结束]
+     * @throws SQLException
+     */
+    public Map<TaskQuery.TYPE, int[]> countByState(TaskQuery query, Set<String> titleMatches) throws SQLException {
+        StringBuilder where = new StringBuilder(" where KIND_ in (?, ?)");
+        List<Object> params = new ArrayList<>();
+        params.add(KIND_PROCESS);
+        params.add(KIND_TASK);
+        filter(query, titleMatches, where, params);
+        String finished = "case when END_TIME_ is null then 0 else 1 end";
+        String sql = "select KIND_, " + finished + ", count(*) from " + table + where + " group by KIND_, " + finished;
+        Map<TaskQuery.TYPE, int[]> counts = new EnumMap<>(TaskQuery.TYPE.class);
+        counts.put(TaskQuery.TYPE.INITIATE, new int[2]);
+        counts.put(TaskQuery.TYPE.PROCESSED, new int[2]);
+        try (Connection connection = dataSource.getConnection(); PreparedStatement ps = prepare(connection, sql, params); ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                TaskQuery.TYPE type = KIND_PROCESS.equals(rs.getString(1)) ? TaskQuery.TYPE.INITIATE : TaskQuery.TYPE.PROCESSED;
+                counts.get(type)[rs.getInt(2)] = rs.getInt(3);
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    public void onEvent(FlowableEvent event) {
+        if (!(event instanceof FlowableEntityEvent)) {
+            return;
+        }
+        Object entity = ((FlowableEntityEvent)event).getEntity();
+        String processInstanceId = null;
+        if (entity instanceof TaskInfo) {
+            processInstanceId = ((TaskInfo)entity).getProcessInstanceId();
+        } else if (entity instanceof Execution) {
+            processInstanceId = ((Execution)entity).getProcessInstanceId();
+        } else if (entity instanceof HistoricProcessInstance) {
+            processInstanceId = ((HistoricProcessInstance)entity).getId();
+        }
+        if (processInstanceId != null) {
+            String id = processInstanceId;
+            Transactions.afterCommit(() -> schedule(id));
+        }
+    }
+
+    @Override
+    public boolean isFailOnException() {
+        return false;
+    }
+
+    @Override
+    public boolean isFireOnTransactionLifecycleEvent() {
+        return false;
+    }
+
+    @Override
+    public String getOnTransaction() {
+        return null;
+    }
+
+    private void schedule(String processInstanceId) {
+        if (!pending.add(processInstanceId)) {
+            return;
+        }
+        executor.execute(() -> {
+            pending.remove(processInstanceId);
+            try {
+                refresh(processInstanceId);
+            } catch (Throwable e) {
+                logger.error("Error refresh summary:" + processInstanceId, e);
+            }
+        });
+    }
+
+    private void rebuild() {
+        try {
+            int count = 0;
+            for (int start = 0; ; start += REBUILD_PAGE) {
+                List<HistoricProcessInstance> page = historyService.createHistoricProcessInstanceQuery().orderByProcessInstanceId().asc().listPage(start, REBUILD_PAGE);
+                for (HistoricProcessInstance process : page) {
+                    refresh(process.getId());
+                }
+                count += page.size();
+                if (page.size() < REBUILD_PAGE) {
+                    break;
+                }
+            }
+            ready = true;
+            logger.info("summary read model rebuilt, process instances:" + count);
+        } catch (Throwable e) {
+            logger.error("Error rebuild summary read model", e);
+        }
+    }
+
+    /**
+     * 从历史表读取流程实例及其任务，整体替换读模型中的行
+     *
+     * @param processInstanceId
+     * @throws SQLException
+     */
+    public void refresh(String processInstanceId) throws SQLException {
+        HistoricProcessInstance process = historyService.createHistoricProcessInstanceQuery().processInstanceId(processInstanceId).singleResult();
+        List<HistoricTaskInstance> tasks = Collections.emptyList();
+        List<HistoricVariableInstance> variables = Collections.emptyList();
+        if (process != null) {
+            tasks = historyService.createHistoricTaskInstanceQuery().processInstanceId(processInstanceId).list();
+            variables = variableLoader.load(Collections.singleton(processInstanceId), VARIABLE_NAMES).getOrDefault(processInstanceId, Collections.emptyList());
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                try (PreparedStatement ps = connection.prepareStatement("delete from " + table + " where PROC_INST_ID_ = ?")) {
+                    ps.setString(1, processInstanceId);
+                    ps.executeUpdate();
+                }
+                if (process != null) {
+                    String sql = "insert into " + table + " (" + COLUMNS + ") values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+                    try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                        Map<String, Object> processVariables = toMap(variables, null);
+                        bind(ps, process.getId(), KIND_PROCESS, process.getId(), process.getProcessDefinitionId(), process.getStartUserId(),
+                            processVariables, null, process.getStartTime(), process.getEndTime(), process.getDurationInMillis());
+                        ps.addBatch();
+                        for (HistoricTaskInstance task : tasks) {
+                            Date startTime = task.getStartTime() == null ? task.getCreateTime() : task.getStartTime();
+                            bind(ps, task.getId(), KIND_TASK, task.getProcessInstanceId(), task.getProcessDefinitionId(), task.getAssignee(),
+                                toMap(variables, task.getId()), task.getAssignee(), startTime, task.getEndTime(), task.getDurationInMillis());
+                            ps.addBatch();
+                        }
+                        ps.executeBatch();
+                    }
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    private void bind(PreparedStatement ps, String id, String kind, String processInstanceId, String processDefinitionId, String ownerId,
+                      Map<String, Object> variables, String assignee, Date startTime, Date endTime, Long duration) throws SQLException {
+        String title = variables.get(Constants.TASK_TITLE) instanceof String ? (String)variables.get(Constants.TASK_TITLE) : null;
+        ps.setString(1, id);
+        ps.setString(2, kind);
+        ps.setString(3, processInstanceId);
+        ps.setString(4, processDefinitionId);
+        ps.setString(5, processDefinitionKey(processDefinitionId));
+        ps.setString(6, ownerId);
+        ps.setString(7, title == null || title.length() <= TITLE_LENGTH ? title : title.substring(0, TITLE_LENGTH));
+        ps.setObject(8, asLong(variables.get(Constants.TASK_INITIATOR_ID)), Types.BIGINT);
+        ps.setObject(9, asLong(variables.get(Constants.TASK_USER_ID)), Types.BIGINT);
+        ps.setString(10, asString(variables.get(Constants.TASK_USER_NAME)));
+        ps.setString(11, assignee);
+        ps.setString(12, asString(variables.get(Constants.TASK_ASSIGNEE_NAME)));
+        ps.setTimestamp(13, startTime == null ? null : new Timestamp(startTime.getTime()));
+        ps.setTimestamp(14, endTime == null ? null : new Timestamp(endTime.getTime()));
+        ps.setObject(15, duration, Types.BIGINT);
+    }
+
+    /**
+     * 流程级变量，任务行再叠加该任务的local变量
+     */
+    private static Map<String, Object> toMap(List<HistoricVariableInstance> variables, String taskId) {
+        Map<String, Object> map = new HashMap<>(8);
+        variables.stream().filter(his -> his.getTaskId() == null).forEach(his -> map.put(his.getVariableName(), his.getValue()));
+        if (taskId != null) {
+            variables.stream().filter(his -> taskId.equals(his.getTaskId())).forEach(his -> map.put(his.getVariableName(), his.getValue()));
+        }
+        return map;
+    }
+
+    private TaskDTO convert(ResultSet rs) throws SQLException {
+        TaskDTO taskDTO = new TaskDTO();
+        boolean task = KIND_TASK.equals(rs.getString("KIND_"));
+        taskDTO.setProcessInstanceId(rs.getString("PROC_INST_ID_"));
+        if (task) {
+            taskDTO.setTaskId(rs.getString("ID_"));
+            taskDTO.setAssignee(rs.getString("ASSIGNEE_"));
+        }
+        taskDTO.setStartTime(toDate(rs.getTimestamp("START_TIME_")));
+        taskDTO.setEndTime(toDate(rs.getTimestamp("END_TIME_")));
+        long duration = rs.getLong("DURATION_");
+        taskDTO.setDurationInMillis(rs.wasNull() ? null : duration);
+        taskDTO.setTitle(rs.getString("TITLE_"));
+        long userId = rs.getLong("USER_ID_");
+        taskDTO.setUserId(rs.wasNull() ? null : userId);
+        taskDTO.setUserName(rs.getString("USER_NAME_"));
+        taskDTO.setAssigneeName(rs.getString("ASSIGNEE_NAME_"));
+        Converter.setState(taskDTO);
+        return taskDTO;
+    }
+
+    /**
+     * 用户、流程key、发起人和标题条件
+     */
+    private void filter(TaskQuery query, Set<String> titleMatches, StringBuilder where, List<Object> params) {
+        where.append(" and OWNER_ID_ = ?");
+        params.add(query.getUserId());
+        if (query.getProcessDefinitionKey() != null) {
+            where.append(" and PROC_DEF_KEY_ = ?");
+            params.add(query.getProcessDefinitionKey());
+        }
+        if (query.getInitiatorId() != null) {
+            where.append(" and INITIATOR_ID_ = ?");
+            params.add(query.getInitiatorId());
+        }
+        if (titleMatches != null) {
+            where.append(" and PROC_INST_ID_ in (");
+            int i = 0;
+            for (String id : titleMatches) {
+                where.append(i++ == 0 ? "?" : ",?");
+                params.add(id);
+            }
+            where.append(')');
+        } else if (query.getTitle() != null) {
+            where.append(" and TITLE_ like ?");
+            params.add(query.getTitle());
+        }
+    }
+
+    private int count(Connection connection, String where, List<Object> params) throws SQLException {
+        try (PreparedStatement ps = prepare(connection, "select count(*) from " + table + where, params); ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * 最多读取max行，用于估算总数
+     */
+    private int countUpTo(Connection connection, String where, List<Object> params, int max) throws SQLException {
+        try (PreparedStatement ps = prepare(connection, "select ID_ from " + table + where, params)) {
+            ps.setMaxRows(max);
+            int count = 0;
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    private PreparedStatement prepare(Connection connection, String sql, List<Object> params) throws SQLException {
+        PreparedStatement ps = connection.prepareStatement(sql);
+        for (int i = 0; i < params.size(); i++) {
+            ps.setObject(i + 1, params.get(i));
+        }
+        return ps;
+    }
+
+    private boolean isEmpty(Connection connection) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("select ID_ from " + table)) {
+            ps.setMaxRows(1);
+            try (ResultSet rs = ps.executeQuery()) {
+                return !rs.next();
+            }
+        }
+    }
+
+    /**
+     * 与{@link Tables#CREATE_SCRIPT}中的定义一致
+     */
+    private void createTable(Connection connection) throws SQLException {
+        String time = connection.getMetaData().getDatabaseProductName().toLowerCase().contains("mysql") ? "datetime(3)" : "timestamp";
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("create table " + table + " (ID_ varchar(64) not null, KIND_ char(1) not null, PROC_INST_ID_ varchar(64) not null, "
+                + "PROC_DEF_ID_ varchar(64), PROC_DEF_KEY_ varchar(255), OWNER_ID_ varchar(255), TITLE_ varchar(" + TITLE_LENGTH + "), "
+                + "INITIATOR_ID_ bigint, USER_ID_ bigint, USER_NAME_ varchar(255), ASSIGNEE_ varchar(255), ASSIGNEE_NAME_ varchar(255), "
+                + "START_TIME_ " + time + " null, END_TIME_ " + time + " null, DURATION_ bigint, primary key (ID_))");
+            statement.execute("create index FLW_IDX_SUM_OWNER on " + table + " (KIND_, OWNER_ID_, START_TIME_, ID_)");
+            statement.execute("create index FLW_IDX_SUM_OWNER_KEY on " + table + " (KIND_, OWNER_ID_, PROC_DEF_KEY_, START_TIME_)");
+            statement.execute("create index FLW_IDX_SUM_PROC on " + table + " (PROC_INST_ID_)");
+        }
+        logger.info("create table " + table);
+    }
+
+    private static String processDefinitionKey(String processDefinitionId) {
+        if (processDefinitionId == null) {
+            return null;
+        }
+        int flag = processDefinitionId.indexOf(':');
+        return flag > 0 ? processDefinitionId.substring(0, flag) : processDefinitionId;
+    }
+
+    private static Date toDate(Timestamp timestamp) {
+        return timestamp == null ? null : new Date(timestamp.getTime());
+    }
+
+    private static Long asLong(Object value) {
+        return value instanceof Number ? ((Number)value).longValue() : null;
+    }
+
+    private static String asString(Object value) {
+        return value == null ? null : String.valueOf(value);
+    }
+}
@@ -0,0 +1,79 @@
+package com.abb.flowable.index;
+
+import org.flowable.task.api.Task;
+
+import java.util.Comparator;
+import java.util.Date;
+
+/**
+ * 待办索引中的任务摘要，字段与Converter.convert(Task)一致
+ *
+ * @author cenpeng.lwm
+ * @since 2026/10/17
+ */
+public class TaskSummary {
+    /**
+     * 与待办查询一致：CREATE_TIME_ desc, ID_ desc
+     */
+    public static final Comparator<TaskSummary> ORDER = Comparator.comparing(TaskSummary::getCreateTime, Comparator.nullsLast(Comparator.<Date>reverseOrder()))
+        .thenComparing(TaskSummary::getId, Comparator.<String>reverseOrder());
+    private final String id;
+    private final String processInstanceId;
+    private final String processDefinitionId;
+    private final String taskDefinitionKey;
+    private final String formKey;
+    private final String assignee;
+    private final Date createTime;
+
+    public TaskSummary(Task task) {
+        this(task.getId(), task.getProcessInstanceId(), task.getProcessDefinitionId(), task.getTaskDefinitionKey(), task.getFormKey(), task.getAssignee(),
+            task.getCreateTime());
+    }
+
+    public TaskSummary(String id, String processInstanceId, String processDefinitionId, String taskDefinitionKey, String formKey, String assignee,
+                       Date createTime) {
+        this.id = id;
+        this.processInstanceId = processInstanceId;
+        this.processDefinitionId = processDefinitionId;
+        this.taskDefinitionKey = taskDefinitionKey;
+        this.formKey = formKey;
+        this.assignee = assignee;
+        this.createTime = createTime;
+    }
+
+    public String getProcessDefinitionKey() {
+        if (processDefinitionId == null) {
+            return null;
+        }
+        int flag = processDefinitionId.indexOf(':');
+        return flag > 0 ? processDefinitionId.substring(0, flag) : processDefinitionId;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getProcessInstanceId() {
+        return processInstanceId;
+    }
+
+    public String getProcessDefinitionId() {
+        return processDefinitionId;
+    }
+
+    public String getTaskDefinitionKey() {
+        return taskDefinitionKey;
+    }
+
+    public String getFormKey() {
+        return formKey;
+    }
+
+    public String getAssignee() {
+        return assignee;
+    }
+
+    public Date getCreateTime() {
+        return createTime;
+    }
+}
@@ -0,0 +1,130 @@
+package com.abb.flowable.index;
+
+import com.abb.flowable.utils.Constants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 标题二元分词(bigram)倒排索引：processInstanceId -> title，用于替换TASK_TITLE变量上的LIKE查询
+ * <p>
+ * 启动时从ACT_HI_VARINST加载，submitProcessor设置标题时更新。匹配不区分大小写；
+ * 模式中间含有通配符、关键字不足两个字符或命中过多时返回null，由调用方回退到LIKE查询。索引只感知本JVM内的提交，适用于单节点部署。
+ *
+ * @author cenpeng.lwm
+ * @since 2026/10/17
+ */
+public class TitleIndex {
+    private static final Logger logger = LoggerFactory.getLogger(TitleIndex.class);
+    private final ConcurrentHashMap<String, String> titles = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Set<String>> grams = new ConcurrentHashMap<>();
+    private final int maxMatches;
+
+    public TitleIndex(int maxMatches) {
+        this.maxMatches = maxMatches;
+    }
+
+    /**
+     * select PROC_INST_ID_, TEXT_ from ACT_HI_VARINST where NAME_ = 'title' and TASK_ID_ is null
+     *
+     * @param dataSource
+     * @param tablePrefix
+     * @throws SQLException
+     */
+    public void load(DataSource dataSource, String tablePrefix) throws SQLException {
+        String sql = "select PROC_INST_ID_, TEXT_ from " + (tablePrefix == null ? "" : tablePrefix)
+            + "ACT_HI_VARINST where NAME_ = ? and TASK_ID_ is null and PROC_INST_ID_ is not null";
+        try (Connection connection = dataSource.getConnection(); PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setString(1, Constants.TASK_TITLE);
+            ps.setFetchSize(1000);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    put(rs.getString(1), rs.getString(2));
+                }
+            }
+        }
+        logger.info("title index loaded, titles:" + titles.size());
+    }
+
+    public void put(String processInstanceId, String title) {
+        if (processInstanceId == null) {
+            return;
+        }
+        String old = title == null ? titles.remove(processInstanceId) : titles.put(processInstanceId, title.toLowerCase());
+        if (old != null) {
+            grams(old).forEach(gram -> {
+                Set<String> ids = grams.get(gram);
+                if (ids != null) {
+                    ids.remove(processInstanceId);
+                }
+            });
+        }
+        if (title != null) {
+            grams(title.toLowerCase()).forEach(gram -> grams.computeIfAbsent(gram, k -> ConcurrentHashMap.newKeySet()).add(processInstanceId));
+        }
+    }
+
+    /**
+     * 按LIKE模式匹配标题
+     *
+     * @param pattern 如 %请假%、请假%
+     * @return 匹配的processInstanceId，无法使用索引时返回null
+     */
+    public Set<String> match(String pattern) {
+        boolean prefix = !pattern.startsWith("%");
+        boolean suffix = !pattern.endsWith("%");
+        String needle = pattern.substring(prefix ? 0 : 1, Math.max(prefix ? 0 : 1, pattern.length() - (suffix ? 0 : 1))).toLowerCase();
+        if (needle.length() < 2 || needle.indexOf('%') >= 0 || needle.indexOf('_') >= 0) {
+            return null;
+        }
+        Set<String> smallest = null;
+        for (String gram : grams(needle)) {
+            Set<String> ids = grams.get(gram);
+            if (ids == null) {
+                return Collections.emptySet();
+            }
+            if (smallest == null || ids.size() < smallest.size()) {
+                smallest = ids;
+            }
+        }
+        Set<String> matches = new HashSet<>();
+        for (String id : smallest) {
+            String title = titles.get(id);
+            if (title != null && matches(title, needle, prefix, suffix)) {
+                matches.add(id);
+                if (matches.size() > maxMatches) {
+                    return null;
+                }
+            }
+        }
+        return matches;
+    }
+
+    private static boolean matches(String title, String needle, boolean prefix, boolean suffix) {
+        if (prefix && suffix) {
+            return title.equals(needle);
+        }
+        if (prefix) {
+            return title.startsWith(needle);
+        }
+        if (suffix) {
+            return title.endsWith(needle);
+        }
+        return title.contains(needle);
+    }
+
+    private static Set<String> grams(String text) {
+        Set<String> set = new HashSet<>();
+        for (int i = 0; i + 2 <= text.length(); i++) {
+            set.add(text.substring(i, i + 2));
+        }
+        return set;
+    }
+}
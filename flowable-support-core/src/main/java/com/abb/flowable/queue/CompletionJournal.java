@@ -0,0 +1,154 @@
+package com.abb.flowable.queue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * 异步完成队列的追加写日志：入队时写ENQUEUE记录，处理结束写DONE记录，启动时重放未结束的记录
+ * <p>
+ * 记录格式：type(byte) seq(long) [length(int) Record序列化字节]，崩溃时截断的尾部记录在重放时忽略
+ *
+ * @author cenpeng.lwm
+ * @since 2026/10/17
+ */
+public class CompletionJournal implements Closeable {
+    private static final byte ENQUEUE = 1;
+    private static final byte DONE = 2;
+    private static final Logger logger = LoggerFactory.getLogger(CompletionJournal.class);
+    private final File file;
+    private final boolean sync;
+    private FileOutputStream out;
+    private DataOutputStream data;
+
+    /**
+     * @param file
+     * @param sync 每条记录都刷到磁盘(fsync)，关闭时进程崩溃可能丢失最近的记录
+     * @throws IOException
+     */
+    public CompletionJournal(File file, boolean sync) throws IOException {
+        this.file = file;
+        this.sync = sync;
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("can not create directory:" + parent);
+        }
+        open();
+    }
+
+    /**
+     * 读取未结束的记录，按seq排序
+     *
+     * @return
+     * @throws IOException
+     */
+    public synchronized List<Record> replay() throws IOException {
+        Map<Long, Record> records = new TreeMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                byte type;
+                long seq;
+                try {
+                    type = in.readByte();
+                    seq = in.readLong();
+                    if (type == ENQUEUE) {
+                        int length = in.readInt();
+                        if (length < 0) {
+                            // 截断的尾部
+                            break;
+                        }
+                        byte[] bytes = new byte[length];
+                        in.readFully(bytes);
+                        records.put(seq, deserialize(bytes));
+                    } else {
+                        records.remove(seq);
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+            }
+        } catch (ClassNotFoundException e) {
+            throw new IOException("illegal journal:" + file, e);
+        }
+        return new ArrayList<>(records.values());
+    }
+
+    public synchronized void append(Record record) throws IOException {
+        byte[] bytes = serialize(record);
+        data.writeByte(ENQUEUE);
+        data.writeLong(record.getSeq());
+        data.writeInt(bytes.length);
+        data.write(bytes);
+        flush();
+    }
+
+    public synchronized void done(long seq) throws IOException {
+        data.writeByte(DONE);
+        data.writeLong(seq);
+        flush();
+    }
+
+    public synchronized long length() {
+        return file.length();
+    }
+
+    /**
+     * 只保留未结束的记录重写日志
+     *
+     * @param pending
+     * @throws IOException
+     */
+    public synchronized void compact(Collection<Record> pending) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream tmpOut = new FileOutputStream(tmp); DataOutputStream tmpData = new DataOutputStream(new BufferedOutputStream(tmpOut))) {
+            for (Record record : pending) {
+                byte[] bytes = serialize(record);
+                tmpData.writeByte(ENQUEUE);
+                tmpData.writeLong(record.getSeq());
+                tmpData.writeInt(bytes.length);
+                tmpData.write(bytes);
+            }
+            tmpData.flush();
+            tmpOut.getFD().sync();
+        }
+        data.close();
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        open();
+        logger.info("completion journal compacted, pending:" + pending.size());
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        data.close();
+    }
+
+    private void open() throws IOException {
+        out = new FileOutputStream(file, true);
+        data = new DataOutputStream(new BufferedOutputStream(out));
+    }
+
+    private void flush() throws IOException {
+        data.flush();
+        if (sync) {
+            out.getFD().sync();
+        }
+    }
+
+    private static byte[] serialize(Record record) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+            oos.writeObject(record);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Record deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (Record)ois.readObject();
+        }
+    }
+}
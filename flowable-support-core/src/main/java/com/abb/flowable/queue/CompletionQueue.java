@@ -0,0 +1,331 @@
+package com.abb.flowable.queue;
+
+import com.abb.flowable.domain.CompleteDTO;
+import com.abb.flowable.utils.NamedThreadFactory;
+import org.flowable.engine.common.api.FlowableObjectNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 写后(write-behind)的任务完成队列：请求先写入本地日志再返回，由后台线程调用引擎完成
+ * <p>
+ * 同一流程实例的请求按processInstanceId哈希到同一个单线程通道，按入队顺序执行；失败按递增间隔重试，
+ * 超过重试次数或任务不存在时写入死信日志(日志文件名加.dead)，可以查询、重新排队或丢弃。未处理完的记录在下次启动时从日志重放
+ *
+ * @author cenpeng.lwm
+ * @since 2026/10/17
+ */
+public class CompletionQueue {
+    private static final Logger logger = LoggerFactory.getLogger(CompletionQueue.class);
+    private final CompletionJournal journal;
+    private final CompletionJournal deadLetters;
+    private final Consumer<Record> handler;
+    private final ThreadPoolExecutor[] lanes;
+    private final int capacity;
+    private final int retries;
+    private final long retryInterval;
+    private final long compactBytes;
+    private final ConcurrentSkipListMap<Long, Record> pending = new ConcurrentSkipListMap<>();
+    private final AtomicInteger depth = new AtomicInteger();
+    private final AtomicLong sequence = new AtomicLong();
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final AtomicInteger deadLetterCount = new AtomicInteger();
+
+    /**
+     * @param journalFile   日志文件
+     * @param sync          每条记录都fsync
+     * @param threads       通道数
+     * @param capacity      最多未完成的请求数
+     * @param retries       失败后的重试次数，用完后写入死信
+     * @param retryInterval 重试间隔(ms)，第n次重试等待n倍
+     * @param compactBytes  日志超过该大小时重写
+     * @param handler       完成记录中的任务
+     * @throws IOException
+     */
+    public CompletionQueue(File journalFile, boolean sync, int threads, int capacity, int retries, long retryInterval, long compactBytes,
+                           Consumer<Record> handler) throws IOException {
+        this.journal = new CompletionJournal(journalFile, sync);
+        this.deadLetters = new CompletionJournal(new File(journalFile.getPath() + ".dead"), sync);
+        this.handler = handler;
+        this.capacity = capacity;
+        this.retries = retries;
+        this.retryInterval = retryInterval;
+        this.compactBytes = compactBytes;
+        this.lanes = new ThreadPoolExecutor[threads];
+        NamedThreadFactory threadFactory = new NamedThreadFactory("flow-complete-");
+        for (int i = 0; i < threads; i++) {
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), threadFactory);
+        }
+    }
+
+    /**
+     * 重放日志中未完成的记录
+     *
+     * @throws IOException
+     */
+    public void start() throws IOException {
+        List<Record> records = journal.replay();
+        for (Record record : records) {
+            sequence.set(Math.max(sequence.get(), record.getSeq()));
+            pending.put(record.getSeq(), record);
+            depth.incrementAndGet();
+        }
+        journal.compact(records);
+        List<Record> dead = deadLetters.replay();
+        for (Record record : dead) {
+            sequence.set(Math.max(sequence.get(), record.getSeq()));
+        }
+        deadLetters.compact(dead);
+        deadLetterCount.set(dead.size());
+        for (Record record : records) {
+            dispatch(record);
+        }
+        if (!records.isEmpty()) {
+            logger.info("completion queue replayed:" + records.size());
+        }
+        if (!dead.isEmpty()) {
+            logger.warn("completion queue dead letters:" + dead.size());
+        }
+    }
+
+    /**
+     * 写入日志并排队
+     *
+     * @param taskId
+     * @param processInstanceId
+     * @param completeDTO
+     * @return 队列已满时返回false
+     * @throws IOException 写日志失败
+     */
+    public boolean offer(String taskId, String processInstanceId, CompleteDTO completeDTO) throws IOException {
+        if (depth.incrementAndGet() > capacity) {
+            depth.decrementAndGet();
+            rejected.increment();
+            return false;
+        }
+        Record record = new Record(sequence.incrementAndGet(), taskId, processInstanceId, completeDTO, System.currentTimeMillis());
+        enqueue(record);
+        return true;
+    }
+
+    private void enqueue(Record record) throws IOException {
+        // 先放入pending再写日志，并发的compact不会丢掉这条记录
+        pending.put(record.getSeq(), record);
+        try {
+            journal.append(record);
+        } catch (IOException e) {
+            pending.remove(record.getSeq());
+            depth.decrementAndGet();
+            throw e;
+        }
+        enqueued.increment();
+        dispatch(record);
+    }
+
+    private void dispatch(Record record) {
+        String key = record.getProcessInstanceId() == null ? record.getTaskId() : record.getProcessInstanceId();
+        lanes[(key.hashCode() & 0x7fffffff) % lanes.length].execute(() -> process(record));
+    }
+
+    private void process(Record record) {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                handler.accept(record);
+                completed.increment();
+                break;
+            } catch (FlowableObjectNotFoundException e) {
+                // 任务id错误，或重放时任务已经完成(提交后未来得及写DONE)，重试没有意义
+                logger.warn("task not found, move to dead letters:" + record.getTaskId());
+                dead(record, e);
+                break;
+            } catch (Throwable e) {
+                if (attempt >= retries) {
+                    logger.error("Error complete task:" + record.getTaskId() + ", move to dead letters after retries:" + retries, e);
+                    dead(record, e);
+                    break;
+                }
+                retried.increment();
+                logger.warn("Error complete task:" + record.getTaskId() + ", retry:" + (attempt + 1), e);
+                try {
+                    Thread.sleep(retryInterval * (attempt + 1));
+                } catch (InterruptedException ie) {
+                    // 关闭中，保留在日志里下次启动重放
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+        pending.remove(record.getSeq());
+        depth.decrementAndGet();
+        try {
+            journal.done(record.getSeq());
+            if (journal.length() > compactBytes) {
+                journal.compact(pending.values());
+            }
+        } catch (IOException e) {
+            logger.error("Error write completion journal", e);
+        }
+    }
+
+    /**
+     * 先写死信再标记DONE，两步之间宕机时重放会再处理一次
+     */
+    private void dead(Record record, Throwable e) {
+        failed.increment();
+        try {
+            deadLetters.append(record.failed(e.getClass().getName() + ": " + e.getMessage()));
+            deadLetterCount.incrementAndGet();
+        } catch (IOException ioe) {
+            logger.error("Error write dead letter, taskId:" + record.getTaskId() + " " + record.getCompleteDTO(), ioe);
+        }
+    }
+
+    /**
+     * @return 死信，按入队顺序，{@link Record#getError()}为失败原因
+     * @throws IOException
+     */
+    public List<Record> getDeadLetters() throws IOException {
+        synchronized (deadLetters) {
+            return deadLetters.replay();
+        }
+    }
+
+    /**
+     * 把死信重新排队(使用新的序号)，原死信删除
+     *
+     * @param seq 死信的序号
+     * @return 死信不存在或队列已满时返回false
+     * @throws IOException
+     */
+    public boolean retryDeadLetter(long seq) throws IOException {
+        synchronized (deadLetters) {
+            Record record = findDeadLetter(seq);
+            if (record == null || !offer(record.getTaskId(), record.getProcessInstanceId(), record.getCompleteDTO())) {
+                return false;
+            }
+            removeDeadLetter(seq);
+            return true;
+        }
+    }
+
+    /**
+     * @param seq 死信的序号
+     * @return 死信不存在时返回false
+     * @throws IOException
+     */
+    public boolean discardDeadLetter(long seq) throws IOException {
+        synchronized (deadLetters) {
+            if (findDeadLetter(seq) == null) {
+                return false;
+            }
+            logger.warn("discard dead letter:" + seq);
+            removeDeadLetter(seq);
+            return true;
+        }
+    }
+
+    private Record findDeadLetter(long seq) throws IOException {
+        for (Record record : deadLetters.replay()) {
+            if (record.getSeq() == seq) {
+                return record;
+            }
+        }
+        return null;
+    }
+
+    private void removeDeadLetter(long seq) throws IOException {
+        deadLetters.done(seq);
+        deadLetterCount.decrementAndGet();
+        if (deadLetters.length() > compactBytes) {
+            deadLetters.compact(deadLetters.replay());
+        }
+    }
+
+    /**
+     * 停止接收，等待已排队的请求处理完，超时后中断，未完成的下次启动重放
+     *
+     * @param timeout
+     * @param unit
+     */
+    public void shutdown(long timeout, TimeUnit unit) {
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        try {
+            for (ThreadPoolExecutor lane : lanes) {
+                if (!lane.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                    lane.shutdownNow();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            journal.close();
+            deadLetters.close();
+        } catch (IOException e) {
+            logger.error("Error close completion journal", e);
+        }
+    }
+
+    /**
+     * 未完成的请求数
+     */
+    public int getDepth() {
+        return depth.get();
+    }
+
+    /**
+     * 最早一条未完成请求已等待的时间(ms)
+     */
+    public long getLagMillis() {
+        Map.Entry<Long, Record> first = pending.firstEntry();
+        return first == null ? 0 : System.currentTimeMillis() - first.getValue().getEnqueueTime();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getEnqueuedCount() {
+        return enqueued.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    public long getRetriedCount() {
+        return retried.sum();
+    }
+
+    /**
+     * 当前的死信数
+     */
+    public int getDeadLetterCount() {
+        return deadLetterCount.get();
+    }
+}
@@ -0,0 +1,69 @@
+package com.abb.flowable.queue;
+
+import com.abb.flowable.domain.CompleteDTO;
+
+import java.io.Serializable;
+
+/**
+ * 异步完成队列中的一条记录
+ *
+ * @author cenpeng.lwm
+ * @since 2026/10/17
+ */
+public class Record implements Serializable {
+    private static final long serialVersionUID = -3416528076915346771L;
+    private final long seq;
+    private final String taskId;
+    private final String processInstanceId;
+    private final CompleteDTO completeDTO;
+    private final long enqueueTime;
+    /**
+     * 进入死信时的失败原因
+     */
+    private final String error;
+
+    public Record(long seq, String taskId, String processInstanceId, CompleteDTO completeDTO, long enqueueTime) {
+        this(seq, taskId, processInstanceId, completeDTO, enqueueTime, null);
+    }
+
+    private Record(long seq, String taskId, String processInstanceId, CompleteDTO completeDTO, long enqueueTime, String error) {
+        this.seq = seq;
+        this.taskId = taskId;
+        this.processInstanceId = processInstanceId;
+        this.completeDTO = completeDTO;
+        this.enqueueTime = enqueueTime;
+        this.error = error;
+    }
+
+    /**
+     * @param error
+     * @return 带失败原因的副本
+     */
+    public Record failed(String error) {
+        return new Record(seq, taskId, processInstanceId, completeDTO, enqueueTime, error);
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public String getTaskId() {
+        return taskId;
+    }
+
+    public String getProcessInstanceId() {
+        return processInstanceId;
+    }
+
+    public CompleteDTO getCompleteDTO() {
+        return completeDTO;
+    }
+
+    public long getEnqueueTime() {
+        return enqueueTime;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,108 @@
+package com.abb.flowable.service.impl;
+
+import org.flowable.engine.HistoryService;
+import org.flowable.engine.ManagementService;
+import org.flowable.engine.history.HistoricActivityInstance;
+import org.flowable.engine.history.NativeHistoricActivityInstanceQuery;
+import org.flowable.engine.history.NativeHistoricProcessInstanceQuery;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * 批量加载多个流程实例的历史节点
+ * <p>
+ * select RES.* from ACT_HI_ACTINST RES WHERE RES.PROC_INST_ID_ in (?, ?, ...) order by RES.ID_ asc
+ * <p>
+ * select RES.ID_ from ACT_HI_PROCINST RES where RES.ID_ in (?, ?, ...) and RES.END_TIME_ is not null
+ *
+ * @author cenpeng.lwm
+ * @since 2026/10/17
+ */
+public class ActivityLoader {
+    private final ManagementService managementService;
+    private final HistoryService historyService;
+    private final String tableName;
+    private final String processTableName;
+    private int batchSize = VariableLoader.DEFAULT_BATCH_SIZE;
+
+    public ActivityLoader(ManagementService managementService, HistoryService historyService, String tablePrefix) {
+        this.managementService = managementService;
+        this.historyService = historyService;
+        this.tableName = (tablePrefix == null ? "" : tablePrefix) + "ACT_HI_ACTINST";
+        this.processTableName = (tablePrefix == null ? "" : tablePrefix) + "ACT_HI_PROCINST";
+    }
+
+    /**
+     * 按processInstanceId分组返回节点，组内按ID_升序，IN列表超过batchSize时分批查询
+     *
+     * @param processInstanceIds
+     * @return
+     */
+    public Map<String, List<HistoricActivityInstance>> load(Collection<String> processInstanceIds) {
+        if (processInstanceIds == null || processInstanceIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        List<String> ids = new ArrayList<>(new LinkedHashSet<>(processInstanceIds));
+        List<HistoricActivityInstance> activities = managementService.executeCommand(commandContext -> {
+            List<HistoricActivityInstance> result = new ArrayList<>();
+            for (int from = 0; from < ids.size(); from += batchSize) {
+                result.addAll(query(ids.subList(from, Math.min(from + batchSize, ids.size()))));
+            }
+            return result;
+        });
+        Map<String, List<HistoricActivityInstance>> mapping = new HashMap<>(ids.size() * 2);
+        activities.forEach(activity -> mapping.computeIfAbsent(activity.getProcessInstanceId(), k -> new ArrayList<>()).add(activity));
+        return mapping;
+    }
+
+    /**
+     * 已结束的流程实例，只查询ID_，IN列表超过batchSize时分批查询
+     *
+     * @param processInstanceIds
+     * @return
+     */
+    public Set<String> finished(Collection<String> processInstanceIds) {
+        if (processInstanceIds == null || processInstanceIds.isEmpty()) {
+            return Collections.emptySet();
+        }
+        List<String> ids = new ArrayList<>(new LinkedHashSet<>(processInstanceIds));
+        return managementService.executeCommand(commandContext -> {
+            Set<String> result = new HashSet<>();
+            for (int from = 0; from < ids.size(); from += batchSize) {
+                List<String> batch = ids.subList(from, Math.min(from + batchSize, ids.size()));
+                NativeHistoricProcessInstanceQuery q = historyService.createNativeHistoricProcessInstanceQuery();
+                String sql = "select RES.ID_ from " + processTableName + " RES where RES.ID_ in (" + parameters(batch, q::parameter)
+                    + ") and RES.END_TIME_ is not null";
+                q.sql(sql).list().forEach(instance -> result.add(instance.getId()));
+            }
+            return result;
+        });
+    }
+
+    private List<HistoricActivityInstance> query(List<String> processInstanceIds) {
+        NativeHistoricActivityInstanceQuery q = historyService.createNativeHistoricActivityInstanceQuery();
+        String sql = "select RES.* from " + tableName + " RES where RES.PROC_INST_ID_ in (" + parameters(processInstanceIds, q::parameter)
+            + ") order by RES.ID_ asc";
+        return q.sql(sql).list();
+    }
+
+    /**
+     * @return #{p0},#{p1},...，同时设置参数
+     */
+    private static String parameters(List<String> values, BiConsumer<String, Object> parameter) {
+        StringBuilder sql = new StringBuilder();
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                sql.append(',');
+            }
+            sql.append("#{p").append(i).append('}');
+            parameter.accept("p" + i, values.get(i));
+        }
+        return sql.toString();
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+}
@@ -0,0 +1,209 @@
+package com.abb.flowable.service.impl;
+
+import com.abb.flowable.domain.*;
+import com.abb.flowable.service.AsyncFlowService;
+import com.abb.flowable.service.FlowService;
+import com.abb.flowable.utils.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 在有界线程池中调用FlowService，队列满时直接返回ERROR_CODE_BUSY（背压），并统计排队/执行耗时
+ *
+ * @author cenpeng.lwm
+ * @since 2026/10/17
+ */
+public class AsyncFlowServiceImpl implements AsyncFlowService, InitializingBean, DisposableBean {
+    private Logger logger = LoggerFactory.getLogger(AsyncFlowServiceImpl.class);
+    private FlowService flowService;
+    private ThreadPoolExecutor executor;
+    private boolean shutdownExecutor;
+    private int threads = 16;
+    private int queueSize = 1000;
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder waitMillis = new LongAdder();
+    private final LongAdder runMillis = new LongAdder();
+
+    @Override
+    public void afterPropertiesSet() {
+        if (executor == null) {
+            executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize), new NamedThreadFactory("flow-async-"),
+                new ThreadPoolExecutor.AbortPolicy());
+            shutdownExecutor = true;
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (shutdownExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    @Override
+    public CompletableFuture<ResultDTO<TaskDTO>> getTask(String taskId, Options options) {
+        return submit(() -> flowService.getTask(taskId, options));
+    }
+
+    @Override
+    public CompletableFuture<ResultDTO<List<TaskDTO>>> query(TaskQuery query) {
+        return submit(() -> flowService.query(query));
+    }
+
+    @Override
+    public CompletableFuture<ResultDTO<DashboardDTO>> dashboard(TaskQuery query) {
+        return submit(() -> flowService.dashboard(query));
+    }
+
+    @Override
+    public CompletableFuture<ResultDTO<ProcessInstanceDTO>> submitProcessor(String processDefinitionKey, SubmitDTO flowSubmitDTO) {
+        return submit(() -> flowService.submitProcessor(processDefinitionKey, flowSubmitDTO));
+    }
+
+    @Override
+    public CompletableFuture<ResultDTO<List<ResultDTO<ProcessInstanceDTO>>>> submitAll(String processDefinitionKey, List<SubmitDTO> submits) {
+        return submit(() -> flowService.submitAll(processDefinitionKey, submits));
+    }
+
+    @Override
+    public CompletableFuture<ResultDTO<Void>> complete(String taskId, CompleteDTO completeDTO) {
+        return submit(() -> flowService.complete(taskId, completeDTO));
+    }
+
+    @Override
+    public CompletableFuture<ResultDTO<Map<String, ResultDTO<Void>>>> completeAll(Map<String, CompleteDTO> completes) {
+        return submit(() -> flowService.completeAll(completes));
+    }
+
+    @Override
+    public CompletableFuture<ResultDTO<List<ProcessNodeDTO>>> getByInstanceId(String processInstanceId, Options options) {
+        return submit(() -> flowService.getByInstanceId(processInstanceId, options));
+    }
+
+    @Override
+    public CompletableFuture<ResultDTO<Map<String, List<ProcessNodeDTO>>>> getByInstanceIds(Collection<String> processInstanceIds, Options options) {
+        return submit(() -> flowService.getByInstanceIds(processInstanceIds, options));
+    }
+
+    @Override
+    public CompletableFuture<ResultDTO<String>> getStartFormKey(String processKey) {
+        return submit(() -> flowService.getStartFormKey(processKey));
+    }
+
+    @Override
+    public CompletableFuture<ResultDTO<String>> getFormKey(String processDefinitionId, String taskDefinitionKey) {
+        return submit(() -> flowService.getFormKey(processDefinitionId, taskDefinitionKey));
+    }
+
+    private <T> CompletableFuture<ResultDTO<T>> submit(Supplier<ResultDTO<T>> call) {
+        CompletableFuture<ResultDTO<T>> future = new CompletableFuture<>();
+        long submitTime = System.currentTimeMillis();
+        try {
+            executor.execute(() -> {
+                long startTime = System.currentTimeMillis();
+                waitMillis.add(startTime - submitTime);
+                try {
+                    ResultDTO<T> result = call.get();
+                    if (result == null) {
+                        throw new IllegalStateException("null result");
+                    }
+                    if (!result.isSuccess()) {
+                        failed.increment();
+                    }
+                    future.complete(result);
+                } catch (Throwable e) {
+                    logger.error("Error async call", e);
+                    failed.increment();
+                    future.completeExceptionally(e);
+                } finally {
+                    runMillis.add(System.currentTimeMillis() - startTime);
+                    completed.increment();
+                }
+            });
+            submitted.increment();
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            future.complete(ResultDTO.buildError(ResultDTO.ERROR_CODE_BUSY, "busy, queue size:" + executor.getQueue().size()));
+        }
+        return future;
+    }
+
+    /**
+     * 当前排队的任务数
+     */
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public long getSubmittedCount() {
+        return submitted.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+
+    /**
+     * 返回失败结果或抛出异常的次数
+     */
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    /**
+     * 平均排队时间(ms)
+     */
+    public long getAverageWaitMillis() {
+        long count = completed.sum();
+        return count == 0 ? 0 : waitMillis.sum() / count;
+    }
+
+    /**
+     * 平均执行时间(ms)
+     */
+    public long getAverageRunMillis() {
+        long count = completed.sum();
+        return count == 0 ? 0 : runMillis.sum() / count;
+    }
+
+    public void setFlowService(FlowService flowService) {
+        this.flowService = flowService;
+    }
+
+    /**
+     * 外部提供的线程池，需使用有界队列，由调用方负责关闭
+     *
+     * @param executor
+     */
+    public void setExecutor(ThreadPoolExecutor executor) {
+        this.executor = executor;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+}
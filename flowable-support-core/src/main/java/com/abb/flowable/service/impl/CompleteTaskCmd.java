@@ -0,0 +1,38 @@
+package com.abb.flowable.service.impl;
+
+import org.flowable.engine.TaskService;
+import org.flowable.engine.common.impl.interceptor.Command;
+import org.flowable.engine.common.impl.interceptor.CommandContext;
+
+import java.util.Map;
+
+/**
+ * 在同一个命令(事务)内设置任务local变量并完成任务
+ * <p>
+ * 内部的setVariablesLocal、complete加入当前命令上下文，任务只从数据库读取一次，提交时统一flush
+ *
+ * @author cenpeng.lwm
+ * @since 2026/10/17
+ */
+public class CompleteTaskCmd implements Command<Void> {
+    private final TaskService taskService;
+    private final String taskId;
+    private final Map<String, Object> taskVariables;
+    private final Map<String, Object> variables;
+
+    public CompleteTaskCmd(TaskService taskService, String taskId, Map<String, Object> taskVariables, Map<String, Object> variables) {
+        this.taskService = taskService;
+        this.taskId = taskId;
+        this.taskVariables = taskVariables;
+        this.variables = variables;
+    }
+
+    @Override
+    public Void execute(CommandContext commandContext) {
+        if (taskVariables != null && !taskVariables.isEmpty()) {
+            taskService.setVariablesLocal(taskId, taskVariables);
+        }
+        taskService.complete(taskId, variables);
+        return null;
+    }
+}
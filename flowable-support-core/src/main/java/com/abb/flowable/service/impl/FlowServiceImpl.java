@@ -1,39 +1,62 @@
 package com.abb.flowable.service.impl;
 
+import com.abb.flowable.cache.CountCache;
+import com.abb.flowable.cache.RequestKeyStore;
+import com.abb.flowable.cache.ResultCache;
+import com.abb.flowable.cache.TimelineCache;
 import com.abb.flowable.domain.*;
+import com.abb.flowable.index.InboxIndex;
+import com.abb.flowable.index.ProcessDefinitionIndex;
+import com.abb.flowable.index.SummaryReadModel;
+import com.abb.flowable.index.TaskSummary;
+import com.abb.flowable.index.TitleIndex;
 import com.abb.flowable.service.FlowService;
 import com.abb.flowable.service.Form;
 import com.abb.flowable.utils.Constants;
 import com.abb.flowable.utils.Converter;
+import com.abb.flowable.utils.NamedThreadFactory;
+import com.abb.flowable.utils.PageCursor;
+import com.abb.flowable.utils.QueryKey;
+import com.abb.flowable.variable.BlobStore;
+import com.abb.flowable.variable.CompactVariableType;
+import com.abb.flowable.variable.ExternalBlobType;
 import org.apache.commons.lang3.StringUtils;
 import org.flowable.engine.*;
+import org.flowable.engine.common.api.query.Query;
+import org.flowable.engine.common.impl.interceptor.CommandContext;
 import org.flowable.engine.common.impl.identity.Authentication;
 import org.flowable.engine.history.HistoricActivityInstance;
 import org.flowable.engine.history.HistoricProcessInstance;
 import org.flowable.engine.history.HistoricProcessInstanceQuery;
-import org.flowable.engine.repository.DeploymentBuilder;
+import org.flowable.engine.impl.cfg.ProcessEngineConfigurationImpl;
 import org.flowable.engine.runtime.ProcessInstance;
+import org.flowable.idm.api.Group;
 import org.flowable.task.api.Task;
 import org.flowable.task.api.history.HistoricTaskInstance;
 import org.flowable.task.api.history.HistoricTaskInstanceQuery;
 import org.flowable.variable.api.history.HistoricVariableInstance;
+import org.flowable.variable.api.types.VariableType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 /**
  * @author cenpeng.lwm
  * @since 2019/5/25
  */
-public class FlowServiceImpl implements FlowService, InitializingBean, ApplicationContextAware {
+public class FlowServiceImpl implements FlowService, InitializingBean, DisposableBean, ApplicationContextAware {
     private Logger logger = LoggerFactory.getLogger(FlowServiceImpl.class);
     private volatile ApplicationContext context;
     private RuntimeService runtimeService;
@@ -42,24 +65,234 @@ public class FlowServiceImpl implements FlowService, InitializingBean, Applicati
     private HistoryService historyService;
     private TaskService taskService;
     private RepositoryService repositoryService;
+    private ManagementService managementService;
+    /**
+     * 历史级别不是none时ACT_HI_VARINST有变量(activity及以上级别记录变量的最新值)，待办变量可以按页从历史表批量加载
+     */
+    private boolean historyVariables;
+    private VariableLoader variableLoader;
+    private ActivityLoader activityLoader;
+    private CountCache countCache;
+    private ResultCache resultCache;
+    private TimelineCache timelineCache;
+    private InboxIndex inboxIndex;
+    private TitleIndex titleIndex;
+    private ProcessDefinitionIndex processDefinitionIndex;
+    private SummaryReadModel summaryReadModel;
+    private RequestKeyStore requestKeyStore;
+    private ExecutorService queryExecutor;
+    private boolean shutdownQueryExecutor;
     private org.springframework.core.io.Resource[] resources;
+    private int variableBatchSize = VariableLoader.DEFAULT_BATCH_SIZE;
+    /**
+     * 启动时并行解析、校验流程文件的线程数
+     */
+    private int deployThreads = Runtime.getRuntime().availableProcessors();
+    /**
+     * Map/List变量使用紧凑编码代替java序列化，见{@link #setCompactVariablesEnabled(boolean)}
+     */
+    private boolean compactVariablesEnabled;
+    /**
+     * 紧凑编码后超过该字节数时压缩
+     */
+    private int compactVariableCompressThreshold = 1024;
+    /**
+     * 大byte[]变量的外部存储目录，为空时不写入；曾经启用过时需保留目录，否则已有变量无法读取
+     */
+    private String blobStoreDirectory;
+    /**
+     * 为false时新变量不再写入外部存储，已有变量仍从目录读取
+     */
+    private boolean blobStoreWriteEnabled = true;
+    /**
+     * 大于等于该字节数的byte[]变量写入外部存储
+     */
+    private int blobThreshold = 64 * 1024;
+    private BlobStore blobStore;
+    /**
+     * 流程最新版本的缓存时间(ms)，本JVM部署时立即失效，其他节点部署后最多延迟该时间
+     */
+    private long latestDefinitionTtl = 60000;
+    /**
+     * submitAll每个事务启动的流程数
+     */
+    private int submitBatchSize = 100;
+    /**
+     * submitAll并行执行批次的线程数，0表示在调用线程顺序执行
+     */
+    private int submitThreads;
+    /**
+     * 配置了submitThreads时submitAll等待各批次的最长时间(ms)，0不限制；超时后未完成的条目返回错误
+     */
+    private long submitAllTimeout;
+    private ExecutorService submitExecutor;
+    private TaskCompleter taskCompleter;
+    /**
+     * 流式查询未指定limit时的每批条数
+     */
+    private int streamBatchSize = 500;
+    /**
+     * 总数缓存时间(ms)，0不缓存
+     */
+    private long countCacheTtl;
+    /**
+     * 幂等key的有效期(ms)，0不启用
+     */
+    private long requestKeyTtl;
+    private int requestKeyCacheSize = 10000;
+    private int countCacheSize = 10000;
+    /**
+     * query结果缓存时间(ms)，0不缓存；由本JVM的引擎事件失效，仅适用于单节点部署
+     */
+    private long resultCacheTtl;
+    private int resultCacheSize = 10000;
+    /**
+     * 已结束流程的getByInstanceId缓存，内存中最多缓存的节点数+变量数，0不缓存
+     */
+    private long timelineCacheWeight;
+    /**
+     * 内存淘汰的结果写入该目录，为空时不写磁盘
+     */
+    private String timelineCacheDirectory;
+    private long timelineCacheDiskBytes = 1024L * 1024 * 1024;
+    /**
+     * 待办内存索引，仅适用于单节点部署
+     */
+    private boolean inboxIndexEnabled;
+    /**
+     * 标题内存索引，仅适用于单节点部署
+     */
+    private boolean titleIndexEnabled;
+    /**
+     * 标题索引命中超过该值时回退到LIKE查询
+     */
+    private int titleIndexMaxMatches = 1000;
+    /**
+     * 发起/处理过列表使用FLW_TASK_SUMMARY读模型，表为空时回填
+     */
+    private boolean summaryReadModelEnabled;
+    /**
+     * 启动时重新回填读模型，用于读模型停用期间有过流程变更的情况
+     */
+    private boolean summaryReadModelRebuild;
+    /**
+     * 启动时自动创建缺少的FLW_表，默认关闭，需先执行sql/flw.*.create.sql建表
+     */
+    private boolean createTables;
+    /**
+     * 总数与分页并发查询的线程数，0表示在调用线程顺序执行
+     */
+    private int queryThreads;
+    private int queryQueueSize = 200;
+    /**
+     * 等待并发查询的超时时间(ms)
+     */
+    private long queryTimeout = 10000;
 
     @Override
     public void afterPropertiesSet() throws Exception {
+        if (blobStoreDirectory != null) {
+            blobStore = new BlobStore(new java.io.File(blobStoreDirectory));
+        }
+        // 始终注册，关闭后已写入的变量仍能加载
+        addVariableType(new ExternalBlobType(blobStore, blobThreshold, blobStoreWriteEnabled));
+        addVariableType(new CompactVariableType(compactVariableCompressThreshold, compactVariablesEnabled));
         processEngine = processEngineConfiguration.buildProcessEngine();
         repositoryService = processEngine.getRepositoryService();
         runtimeService = processEngine.getRuntimeService();
         taskService = processEngine.getTaskService();
         historyService = processEngine.getHistoryService();
-        DeploymentBuilder builder = repositoryService.createDeployment();
-        for (org.springframework.core.io.Resource resource : resources) {
-            logger.info("load process file:" + resource.getFile());
-            builder.addInputStream(resource.getFilename(), resource.getInputStream());
+        historyVariables = !"none".equals(((ProcessEngineConfigurationImpl)processEngineConfiguration).getHistoryLevel().getKey());
+        managementService = processEngine.getManagementService();
+        variableLoader = new VariableLoader(managementService, historyService, processEngineConfiguration.getDatabaseTablePrefix());
+        variableLoader.setBatchSize(variableBatchSize);
+        activityLoader = new ActivityLoader(managementService, historyService, processEngineConfiguration.getDatabaseTablePrefix());
+        activityLoader.setBatchSize(variableBatchSize);
+        if (countCacheTtl > 0) {
+            countCache = new CountCache(countCacheTtl, countCacheSize);
+        }
+        if (resultCacheTtl > 0) {
+            resultCache = new ResultCache(resultCacheTtl, resultCacheSize);
+            runtimeService.addEventListener(resultCache, ResultCache.EVENT_TYPES);
+        }
+        if (timelineCacheWeight > 0) {
+            timelineCache = new TimelineCache(timelineCacheWeight, timelineCacheDirectory == null ? null : new java.io.File(timelineCacheDirectory),
+                timelineCacheDiskBytes);
+        }
+        if (submitThreads > 0) {
+            // 队列满时由调用线程执行批次，限制待执行批次占用的内存
+            submitExecutor = new ThreadPoolExecutor(submitThreads, submitThreads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(submitThreads * 2),
+                new NamedThreadFactory("flow-submit-"), new ThreadPoolExecutor.CallerRunsPolicy());
+        }
+        if (queryExecutor == null && queryThreads > 0) {
+            // 队列满时由调用线程执行，退化为顺序查询
+            queryExecutor = new ThreadPoolExecutor(queryThreads, queryThreads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queryQueueSize),
+                new NamedThreadFactory("flow-query-"), new ThreadPoolExecutor.CallerRunsPolicy());
+            shutdownQueryExecutor = true;
+        }
+        processDefinitionIndex = new ProcessDefinitionIndex(repositoryService, latestDefinitionTtl);
+        runtimeService.addEventListener(processDefinitionIndex, ProcessDefinitionIndex.EVENT_TYPES);
+        processDefinitionIndex.index(new ResourceDeployer(repositoryService, ((ProcessEngineConfigurationImpl)processEngineConfiguration).getProcessValidator(),
+            deployThreads).deploy(resources));
+        if (inboxIndexEnabled) {
+            inboxIndex = new InboxIndex(this::groupsOfUser);
+            runtimeService.addEventListener(inboxIndex, InboxIndex.EVENT_TYPES);
+            inboxIndex.rebuild(processEngineConfiguration.getDataSource(), processEngineConfiguration.getDatabaseTablePrefix());
         }
-        builder.deploy();
+        if (titleIndexEnabled) {
+            titleIndex = new TitleIndex(titleIndexMaxMatches);
+            titleIndex.load(processEngineConfiguration.getDataSource(), processEngineConfiguration.getDatabaseTablePrefix());
+        }
+        if (summaryReadModelEnabled) {
+            summaryReadModel = new SummaryReadModel(processEngineConfiguration.getDataSource(), historyService, variableLoader,
+                processEngineConfiguration.getDatabaseTablePrefix());
+            runtimeService.addEventListener(summaryReadModel, SummaryReadModel.EVENT_TYPES);
+            summaryReadModel.init(summaryReadModelRebuild, createTables);
+        }
+        if (requestKeyTtl > 0) {
+            requestKeyStore = new RequestKeyStore(processEngineConfiguration.getDataSource(), processEngineConfiguration.getDatabaseTablePrefix(),
+                requestKeyTtl, requestKeyCacheSize);
+            requestKeyStore.init(createTables);
+        }
+        if (taskCompleter == null) {
+            taskCompleter = new TaskCompleter();
+        }
+        taskCompleter.init(processEngine, requestKeyStore, this::invalidateCount);
         logger.info("processEngine init finished");
     }
 
+    /**
+     * 自定义变量类型排在引擎默认类型之前，优先匹配
+     *
+     * @param variableType
+     */
+    private void addVariableType(VariableType variableType) {
+        ProcessEngineConfigurationImpl configuration = (ProcessEngineConfigurationImpl)processEngineConfiguration;
+        List<VariableType> types = configuration.getCustomPreVariableTypes() == null ? new ArrayList<>() : new ArrayList<>(
+            configuration.getCustomPreVariableTypes());
+        types.add(variableType);
+        configuration.setCustomPreVariableTypes(types);
+    }
+
+    @Override
+    public void destroy() {
+        if (shutdownQueryExecutor) {
+            queryExecutor.shutdownNow();
+        }
+        if (submitExecutor != null) {
+            submitExecutor.shutdownNow();
+        }
+        if (taskCompleter != null) {
+            taskCompleter.shutdown();
+        }
+        if (summaryReadModel != null) {
+            summaryReadModel.shutdown();
+        }
+        if (requestKeyStore != null) {
+            requestKeyStore.shutdown();
+        }
+    }
+
     @Override
     public Form getFrom(String formKey) {
         try {
@@ -79,7 +312,8 @@ public class FlowServiceImpl implements FlowService, InitializingBean, Applicati
             }
             TaskDTO flowTaskDTO = Converter.convert(task);
             if (options.isWithVariables()) {
-                Map<String, Object> variables = taskService.getVariables(taskId);
+                Set<String> variableNames = Converter.withBuiltinVariables(options.getVariableNames());
+                Map<String, Object> variables = variableNames == null ? taskService.getVariables(taskId) : taskService.getVariables(taskId, variableNames);
                 Converter.setVariables(flowTaskDTO, variables);
             }
             return ResultDTO.buildSuccess(flowTaskDTO);
@@ -98,20 +332,166 @@ public class FlowServiceImpl implements FlowService, InitializingBean, Applicati
             if (query.getState() == null) {
                 query.setState(TaskQuery.STATE.ALL);
             }
-            if (query.getType() == TaskQuery.TYPE.WAITING_PROCESS) {
-                return createTaskQuery(query);
-            } else if (query.getType() == TaskQuery.TYPE.INITIATE) {
-                return createHistoricProcessInstanceQuery(query);
-            } else if (query.getType() == TaskQuery.TYPE.PROCESSED) {
-                return createHistoricTaskInstanceQuery(query);
+            if (resultCache == null || query.getUserId() == null) {
+                return doQuery(query);
             }
-            return ResultDTO.buildError(ResultDTO.ERROR_CODE_SYSTEM_ERROR, "miss type");
+            String key = QueryKey.page(query);
+            ResultDTO<List<TaskDTO>> result = resultCache.get(key);
+            if (result != null) {
+                return result;
+            }
+            long generation = resultCache.generation(query.getUserId());
+            result = doQuery(query);
+            if (result.isSuccess()) {
+                resultCache.put(key, query.getUserId(), generation, result);
+            }
+            return result;
         } catch (Throwable e) {
             logger.error("Error query:" + query, e);
             return ResultDTO.buildError(ResultDTO.ERROR_CODE_SYSTEM_ERROR, e.getMessage());
         }
     }
 
+    private ResultDTO<List<TaskDTO>> doQuery(TaskQuery query) {
+        if (query.getType() == TaskQuery.TYPE.WAITING_PROCESS) {
+            return createTaskQuery(query);
+        } else if (query.getType() == TaskQuery.TYPE.INITIATE) {
+            return createHistoricProcessInstanceQuery(query);
+        } else if (query.getType() == TaskQuery.TYPE.PROCESSED) {
+            return createHistoricTaskInstanceQuery(query);
+        }
+        return ResultDTO.buildError(ResultDTO.ERROR_CODE_SYSTEM_ERROR, "miss type");
+    }
+
+    @Override
+    public ResultDTO<Long> stream(TaskQuery query, Consumer<TaskDTO> consumer) {
+        if (null == query.getType()) {
+            return ResultDTO.buildError(ResultDTO.ERROR_CODE_SYSTEM_ERROR, "miss type");
+        }
+        TaskQuery batch = filter(query, query.getState() == null ? TaskQuery.STATE.ALL : query.getState()).setType(query.getType())
+            .setWithVariables(query.isWithVariables()).setVariableNames(query.getVariableNames()).setLimit(query.getLimit() > 0 ? query.getLimit() : streamBatchSize);
+        long count = 0;
+        try {
+            do {
+                ResultDTO<List<TaskDTO>> page = doQuery(batch);
+                if (!page.isSuccess()) {
+                    return ResultDTO.buildError(ResultDTO.ERROR_CODE_SYSTEM_ERROR, page.getErrMsg());
+                }
+                for (TaskDTO taskDTO : page.getData()) {
+                    consumer.accept(taskDTO);
+                    count++;
+                }
+                batch.setCursor(page.getCursor());
+            } while (batch.getCursor() != null);
+            return ResultDTO.buildSuccess(count);
+        } catch (Throwable e) {
+            logger.error("Error stream:" + query + " count:" + count, e);
+            return ResultDTO.buildError(ResultDTO.ERROR_CODE_SYSTEM_ERROR, e.getMessage());
+        }
+    }
+
+    /**
+     * 数量和第一页在同一个命令内查询，共用一个数据库连接：UNFINISHED = ALL - FINISHED，待处理的任务都未结束；
+     * 启用读模型时发起和处理过的数量由一条分组查询得到
+     *
+     * @param query
+     * @return
+     */
+    @Override
+    public ResultDTO<DashboardDTO> dashboard(TaskQuery query) {
+        if (query.getUserId() == null) {
+            return ResultDTO.buildError(ResultDTO.ERROR_CODE_SYSTEM_ERROR, "miss user");
+        }
+        try {
+            DashboardDTO dashboard = new DashboardDTO();
+            Set<String> titleMatches = matchTitle(query);
+            if (titleMatches != null && titleMatches.isEmpty()) {
+                for (TaskQuery.TYPE type : TaskQuery.TYPE.values()) {
+                    setCounts(dashboard, type, 0, 0);
+                    if (query.getLimit() > 0) {
+                        dashboard.setTasks(type, new ArrayList<>());
+                    }
+                }
+                return ResultDTO.buildSuccess(dashboard);
+            }
+            TaskQuery all = filter(query, TaskQuery.STATE.ALL);
+            TaskQuery finished = filter(query, TaskQuery.STATE.FINISHED);
+            Map<TaskQuery.TYPE, int[]> summaryCounts = summaryReadModel != null && summaryReadModel.accept(query) ? summaryReadModel.countByState(query, titleMatches) : null;
+            List<HistoricProcessInstance> initiated = new ArrayList<>();
+            List<HistoricTaskInstance> processed = new ArrayList<>();
+            List<Task> waiting = new ArrayList<>();
+            Map<String, List<HistoricVariableInstance>> mapping = new HashMap<>();
+            managementService.executeCommand(commandContext -> {
+                if (summaryCounts == null) {
+                    setCounts(dashboard, TaskQuery.TYPE.INITIATE, historicProcessInstanceQuery(all, titleMatches).count(), historicProcessInstanceQuery(finished, titleMatches).count());
+                    setCounts(dashboard, TaskQuery.TYPE.PROCESSED, historicTaskInstanceQuery(all, titleMatches).count(), historicTaskInstanceQuery(finished, titleMatches).count());
+                } else {
+                    summaryCounts.forEach((type, counts) -> setCounts(dashboard, type, counts[0] + counts[1], counts[1]));
+                }
+                setCounts(dashboard, TaskQuery.TYPE.WAITING_PROCESS, taskQuery(all, titleMatches).count(), 0);
+                if (query.getLimit() > 0) {
+                    initiated.addAll(historicProcessInstanceQuery(all, titleMatches).listPage(0, query.getLimit()));
+                    processed.addAll(historicTaskInstanceQuery(all, titleMatches).listPage(0, query.getLimit()));
+                    waiting.addAll(taskQuery(all, titleMatches).listPage(0, query.getLimit()));
+                    if (query.isWithVariables()) {
+                        Set<String> ids = new HashSet<>();
+                        initiated.forEach(process -> ids.add(process.getId()));
+                        processed.forEach(task -> ids.add(task.getProcessInstanceId()));
+                        waiting.forEach(task -> ids.add(task.getProcessInstanceId()));
+                        mapping.putAll(variableLoader.load(ids, Converter.withBuiltinVariables(query.getVariableNames())));
+                    }
+                }
+                return null;
+            });
+            if (query.getLimit() > 0) {
+                dashboard.setTasks(TaskQuery.TYPE.INITIATE, initiated.stream().map(process -> {
+                    TaskDTO taskDTO = Converter.convert(process);
+                    if (query.isWithVariables()) {
+                        Converter.setVariables(taskDTO, VariableLoader.toMap(mapping.get(process.getId())));
+                    }
+                    return taskDTO;
+                }).collect(Collectors.toList()));
+                dashboard.setTasks(TaskQuery.TYPE.PROCESSED, processed.stream().map(task -> {
+                    TaskDTO taskDTO = Converter.convert(task);
+                    if (query.isWithVariables()) {
+                        Converter.setVariables(taskDTO, VariableLoader.toMap(mapping.get(task.getProcessInstanceId())));
+                    }
+                    return taskDTO;
+                }).collect(Collectors.toList()));
+                dashboard.setTasks(TaskQuery.TYPE.WAITING_PROCESS, waiting.stream().map(task -> {
+                    TaskDTO taskDTO = Converter.convert(task);
+                    if (query.isWithVariables()) {
+                        Converter.setVariables(taskDTO, waitingVariables(mapping, task.getProcessInstanceId(), task.getId(), query.getVariableNames()));
+                    }
+                    return taskDTO;
+                }).collect(Collectors.toList()));
+            }
+            return ResultDTO.buildSuccess(dashboard);
+        } catch (Throwable e) {
+            logger.error("Error dashboard:" + query, e);
+            return ResultDTO.buildError(ResultDTO.ERROR_CODE_SYSTEM_ERROR, e.getMessage());
+        }
+    }
+
+    private static void setCounts(DashboardDTO dashboard, TaskQuery.TYPE type, long all, long finished) {
+        dashboard.setCount(type, TaskQuery.STATE.ALL, (int)all);
+        dashboard.setCount(type, TaskQuery.STATE.FINISHED, (int)finished);
+        dashboard.setCount(type, TaskQuery.STATE.UNFINISHED, (int)(all - finished));
+    }
+
+    /**
+     * 只复制过滤条件
+     *
+     * @param query
+     * @param state
+     * @return
+     */
+    private static TaskQuery filter(TaskQuery query, TaskQuery.STATE state) {
+        return new TaskQuery().setUserId(query.getUserId()).setProcessDefinitionKey(query.getProcessDefinitionKey()).setInitiatorId(query.getInitiatorId())
+            .setTitle(query.getTitle()).setProcessVariableValueEquals(query.getProcessVariableValueEquals())
+            .setProcessVariableValueNotEquals(query.getProcessVariableValueNotEquals()).setState(state);
+    }
+
     /**
      * select distinct RES.* from ACT_HI_TASKINST RES WHERE RES.ASSIGNEE_ = ? order by RES.START_TIME_ desc LIMIT 100
      *
@@ -119,7 +499,37 @@ public class FlowServiceImpl implements FlowService, InitializingBean, Applicati
      * @return
      */
     public ResultDTO<List<TaskDTO>> createHistoricTaskInstanceQuery(TaskQuery query) {
-        int total = 0;
+        Set<String> titleMatches = matchTitle(query);
+        if (titleMatches != null && titleMatches.isEmpty()) {
+            return ResultDTO.buildSuccess(new ArrayList<>(), 0);
+        }
+        if (summaryReadModel != null && summaryReadModel.accept(query)) {
+            return querySummaryReadModel(query, titleMatches);
+        }
+        PendingTotal total = count(query, () -> historicTaskInstanceQuery(query, titleMatches));
+        try {
+            HistoricTaskInstanceQuery q = historicTaskInstanceQuery(query, titleMatches);
+            PageCursor cursor = PageCursor.decode(query.getCursor());
+            if (cursor != null) {
+                q.taskCreatedBefore(cursor.getSeekTime());
+            }
+            List<TaskDTO> list = new ArrayList<>();
+            List<HistoricTaskInstance> tasks = listPage(q, query, cursor, HistoricTaskInstance::getCreateTime, HistoricTaskInstance::getId);
+            Map<String, List<HistoricVariableInstance>> mapping = loadVariables(query, tasks, HistoricTaskInstance::getProcessInstanceId);
+            tasks.forEach(task -> {
+                TaskDTO taskDTO = Converter.convert(task);
+                if (query.isWithVariables()) {
+                    Converter.setVariables(taskDTO, VariableLoader.toMap(mapping.get(task.getProcessInstanceId())));
+                }
+                list.add(taskDTO);
+            });
+            return total.build(list).setCursor(nextCursor(query, tasks, HistoricTaskInstance::getCreateTime, HistoricTaskInstance::getId));
+        } finally {
+            total.cancel();
+        }
+    }
+
+    private HistoricTaskInstanceQuery historicTaskInstanceQuery(TaskQuery query, Set<String> titleMatches) {
         HistoricTaskInstanceQuery q = historyService.createHistoricTaskInstanceQuery();
         q.processDefinitionKey(query.getProcessDefinitionKey());
         q.taskAssignee(String.valueOf(query.getUserId()));
@@ -131,7 +541,9 @@ public class FlowServiceImpl implements FlowService, InitializingBean, Applicati
                 q.finished();
                 break;
         }
-        if (query.getTitle() != null) {
+        if (titleMatches != null) {
+            q.processInstanceIdIn(new ArrayList<>(titleMatches));
+        } else if (query.getTitle() != null) {
             q.processVariableValueLike(Constants.TASK_TITLE, query.getTitle());
         }
         if (query.getInitiatorId() != null) {
@@ -145,22 +557,9 @@ public class FlowServiceImpl implements FlowService, InitializingBean, Applicati
         }
         q.orderByTaskCreateTime();
         q.desc();
-        if (query.isNeedTotal()) {
-            total = (int)q.count();
-        }
-        List<TaskDTO> list = new ArrayList<>();
-        List<HistoricTaskInstance> tasks = q.listPage(query.getStart(), query.getLimit());
-        tasks.forEach(task -> {
-            TaskDTO taskDTO = Converter.convert(task);
-            if (query.isWithVariables()) {
-                List<HistoricVariableInstance> histories = historyService.createHistoricVariableInstanceQuery().processInstanceId(task.getProcessInstanceId()).list();
-                Map<String, Object> variables = new HashMap<>(8);
-                histories.forEach(his -> variables.put(his.getVariableName(), his.getValue()));
-                Converter.setVariables(taskDTO, variables);
-            }
-            list.add(taskDTO);
-        });
-        return ResultDTO.buildSuccess(list, total);
+        q.orderByTaskId();
+        q.desc();
+        return q;
     }
 
     /**
@@ -180,7 +579,37 @@ public class FlowServiceImpl implements FlowService, InitializingBean, Applicati
      * @return
      */
     public ResultDTO<List<TaskDTO>> createHistoricProcessInstanceQuery(TaskQuery query) {
-        int total = 0;
+        Set<String> titleMatches = matchTitle(query);
+        if (titleMatches != null && titleMatches.isEmpty()) {
+            return ResultDTO.buildSuccess(new ArrayList<>(), 0);
+        }
+        if (summaryReadModel != null && summaryReadModel.accept(query)) {
+            return querySummaryReadModel(query, titleMatches);
+        }
+        PendingTotal total = count(query, () -> historicProcessInstanceQuery(query, titleMatches));
+        try {
+            HistoricProcessInstanceQuery q = historicProcessInstanceQuery(query, titleMatches);
+            PageCursor cursor = PageCursor.decode(query.getCursor());
+            if (cursor != null) {
+                q.startedBefore(cursor.getSeekTime());
+            }
+            List<HistoricProcessInstance> tasks = listPage(q, query, cursor, HistoricProcessInstance::getStartTime, HistoricProcessInstance::getId);
+            List<TaskDTO> list = new ArrayList<>();
+            Map<String, List<HistoricVariableInstance>> mapping = loadVariables(query, tasks, HistoricProcessInstance::getId);
+            tasks.forEach(task -> {
+                TaskDTO flowTaskDTO = Converter.convert(task);
+                if (query.isWithVariables()) {
+                    Converter.setVariables(flowTaskDTO, VariableLoader.toMap(mapping.get(task.getId())));
+                }
+                list.add(flowTaskDTO);
+            });
+            return total.build(list).setCursor(nextCursor(query, tasks, HistoricProcessInstance::getStartTime, HistoricProcessInstance::getId));
+        } finally {
+            total.cancel();
+        }
+    }
+
+    private HistoricProcessInstanceQuery historicProcessInstanceQuery(TaskQuery query, Set<String> titleMatches) {
         HistoricProcessInstanceQuery q = historyService.createHistoricProcessInstanceQuery();
         q.processDefinitionKey(query.getProcessDefinitionKey());
         q.startedBy(query.getUserId());
@@ -195,7 +624,9 @@ public class FlowServiceImpl implements FlowService, InitializingBean, Applicati
         if (query.getInitiatorId() != null) {
             q.variableValueEquals(Constants.TASK_INITIATOR_ID, query.getInitiatorId());
         }
-        if (query.getTitle() != null) {
+        if (titleMatches != null) {
+            q.processInstanceIds(titleMatches);
+        } else if (query.getTitle() != null) {
             q.variableValueLike(Constants.TASK_TITLE, query.getTitle());
         }
         if (query.getProcessVariableValueEquals() != null) {
@@ -206,22 +637,9 @@ public class FlowServiceImpl implements FlowService, InitializingBean, Applicati
         }
         q.orderByProcessInstanceStartTime();
         q.desc();
-        if (query.isNeedTotal()) {
-            total = (int)q.count();
-        }
-        List<HistoricProcessInstance> tasks = q.listPage(query.getStart(), query.getLimit());
-        List<TaskDTO> list = new ArrayList<>();
-        tasks.forEach(task -> {
-            TaskDTO flowTaskDTO = Converter.convert(task);
-            if (query.isWithVariables()) {
-                List<HistoricVariableInstance> histories = historyService.createHistoricVariableInstanceQuery().processInstanceId(task.getId()).list();
-                Map<String, Object> variables = new HashMap<>(8);
-                histories.forEach(his -> variables.put(his.getVariableName(), his.getValue()));
-                Converter.setVariables(flowTaskDTO, variables);
-            }
-            list.add(flowTaskDTO);
-        });
-        return ResultDTO.buildSuccess(list, total);
+        q.orderByProcessInstanceId();
+        q.desc();
+        return q;
     }
 
     /**
@@ -232,14 +650,46 @@ public class FlowServiceImpl implements FlowService, InitializingBean, Applicati
      * @return
      */
     public ResultDTO<List<TaskDTO>> createTaskQuery(TaskQuery query) {
-        int total = 0;
+        if (inboxIndex != null && inboxIndex.accept(query)) {
+            return queryInboxIndex(query);
+        }
+        Set<String> titleMatches = matchTitle(query);
+        if (titleMatches != null && titleMatches.isEmpty()) {
+            return ResultDTO.buildSuccess(new ArrayList<>(), 0);
+        }
+        PendingTotal total = count(query, () -> taskQuery(query, titleMatches));
+        try {
+            org.flowable.task.api.TaskQuery q = taskQuery(query, titleMatches);
+            PageCursor cursor = PageCursor.decode(query.getCursor());
+            if (cursor != null) {
+                q.taskCreatedBefore(cursor.getSeekTime());
+            }
+            List<Task> tasks = listPage(q, query, cursor, Task::getCreateTime, Task::getId);
+            List<TaskDTO> list = new ArrayList<>();
+            Map<String, List<HistoricVariableInstance>> mapping = loadVariables(query, tasks, Task::getProcessInstanceId);
+            tasks.forEach(task -> {
+                TaskDTO taskDTO = Converter.convert(task);
+                if (query.isWithVariables()) {
+                    Converter.setVariables(taskDTO, waitingVariables(mapping, task.getProcessInstanceId(), task.getId(), query.getVariableNames()));
+                }
+                list.add(taskDTO);
+            });
+            return total.build(list).setCursor(nextCursor(query, tasks, Task::getCreateTime, Task::getId));
+        } finally {
+            total.cancel();
+        }
+    }
+
+    private org.flowable.task.api.TaskQuery taskQuery(TaskQuery query, Set<String> titleMatches) {
         org.flowable.task.api.TaskQuery q = taskService.createTaskQuery();
         q.processDefinitionKey(query.getProcessDefinitionKey());
         q.taskCandidateOrAssigned(query.getUserId());
         if (query.getInitiatorId() != null) {
             q.processVariableValueEquals(Constants.TASK_INITIATOR_ID, query.getInitiatorId());
         }
-        if (query.getTitle() != null) {
+        if (titleMatches != null) {
+            q.processInstanceIdIn(new ArrayList<>(titleMatches));
+        } else if (query.getTitle() != null) {
             q.processVariableValueLike(Constants.TASK_TITLE, query.getTitle());
         }
         if (query.getProcessVariableValueEquals() != null) {
@@ -250,50 +700,244 @@ public class FlowServiceImpl implements FlowService, InitializingBean, Applicati
         }
         q.orderByTaskCreateTime();
         q.desc();
+        q.orderByTaskId();
+        q.desc();
+        return q;
+    }
+
+    /**
+     * 与taskCandidateOrAssigned取候选组的方式一致：未启用IDM引擎时没有组
+     *
+     * @param userId
+     * @return
+     */
+    private Collection<String> groupsOfUser(String userId) {
+        if (((ProcessEngineConfigurationImpl)processEngineConfiguration).isDisableIdmEngine()) {
+            return Collections.emptyList();
+        }
+        return processEngine.getIdentityService().createGroupQuery().groupMember(userId).list().stream().map(Group::getId).collect(Collectors.toList());
+    }
+
+    /**
+     * 通过标题索引解析标题过滤条件
+     *
+     * @param query
+     * @return 匹配的processInstanceId，未启用索引或无法使用索引时返回null
+     */
+    private Set<String> matchTitle(TaskQuery query) {
+        if (titleIndex == null || query.getTitle() == null) {
+            return null;
+        }
+        return titleIndex.match(query.getTitle());
+    }
+
+    /**
+     * needTotal时开始统计总数，配置了queryExecutor时与分页查询并发执行
+     *
+     * @param query
+     * @param q     每次调用生成新的查询对象，查询对象不能并发使用
+     * @return
+     */
+    private PendingTotal count(TaskQuery query, Supplier<Query<?, ?>> q) {
+        if (!query.isNeedTotal()) {
+            return new PendingTotal(CountCache.Total.NONE);
+        }
+        if (queryExecutor == null) {
+            return new PendingTotal(count(query, q.get()));
+        }
+        return new PendingTotal(queryExecutor.submit(() -> count(query, q.get())), queryTimeout);
+    }
+
+    /**
+     * 总数，设置了totalLimit时先探测第totalLimit条是否存在，存在则不再count
+     *
+     * @param query
+     * @param q
+     * @return
+     */
+    private CountCache.Total count(TaskQuery query, Query<?, ?> q) {
+        String key = countCache == null ? null : QueryKey.filter(query);
+        if (key != null) {
+            CountCache.Total total = countCache.get(key);
+            if (total != null) {
+                return total;
+            }
+        }
+        long generation = countCache == null ? 0 : countCache.generation();
+        CountCache.Total total;
+        if (query.getTotalLimit() > 0 && !q.listPage(query.getTotalLimit(), 1).isEmpty()) {
+            total = new CountCache.Total(query.getTotalLimit(), true);
+        } else {
+            total = new CountCache.Total((int)q.count(), false);
+        }
+        if (key != null) {
+            countCache.put(key, generation, total);
+        }
+        return total;
+    }
+
+    /**
+     * 游标分页：查询条件已限定 时间 <= 游标时间，这里跳过同一时间下已经返回过的记录
+     *
+     * @param q
+     * @param query
+     * @param cursor
+     * @param time
+     * @param id
+     * @return
+     */
+    private <T> List<T> listPage(Query<?, T> q, TaskQuery query, PageCursor cursor, Function<T, Date> time, Function<T, String> id) {
+        if (cursor == null) {
+            return q.listPage(query.getStart(), query.getLimit());
+        }
+        List<T> list = new ArrayList<>(query.getLimit());
+        int offset = 0;
+        while (list.size() < query.getLimit()) {
+            List<T> page = q.listPage(offset, query.getLimit());
+            for (T t : page) {
+                if (list.size() < query.getLimit() && cursor.isAfter(time.apply(t), id.apply(t))) {
+                    list.add(t);
+                }
+            }
+            if (page.size() < query.getLimit()) {
+                break;
+            }
+            offset += page.size();
+        }
+        return list;
+    }
+
+    private <T> String nextCursor(TaskQuery query, List<T> tasks, Function<T, Date> time, Function<T, String> id) {
+        if (tasks.isEmpty() || tasks.size() < query.getLimit()) {
+            return null;
+        }
+        T last = tasks.get(tasks.size() - 1);
+        return PageCursor.encode(time.apply(last), id.apply(last));
+    }
+
+    /**
+     * 由待办内存索引分页，变量仍然整页批量加载
+     *
+     * @param query
+     * @return
+     */
+    private ResultDTO<List<TaskDTO>> queryInboxIndex(TaskQuery query) {
+        List<TaskSummary> all = inboxIndex.list(query.getUserId(), query.getProcessDefinitionKey());
+        PageCursor cursor = PageCursor.decode(query.getCursor());
+        List<TaskSummary> tasks;
+        if (cursor == null) {
+            int from = Math.min(query.getStart(), all.size());
+            tasks = all.subList(from, (int)Math.min((long)from + query.getLimit(), all.size()));
+        } else {
+            tasks = all.stream().filter(task -> cursor.isAfter(task.getCreateTime(), task.getId())).limit(query.getLimit()).collect(Collectors.toList());
+        }
+        CountCache.Total total = CountCache.Total.NONE;
         if (query.isNeedTotal()) {
-            total = (int)q.count();
+            boolean estimated = query.getTotalLimit() > 0 && all.size() > query.getTotalLimit();
+            total = new CountCache.Total(estimated ? query.getTotalLimit() : all.size(), estimated);
         }
-        List<Task> tasks = q.listPage(query.getStart(), query.getLimit());
         List<TaskDTO> list = new ArrayList<>();
+        Map<String, List<HistoricVariableInstance>> mapping = loadVariables(query, tasks, TaskSummary::getProcessInstanceId);
         tasks.forEach(task -> {
             TaskDTO taskDTO = Converter.convert(task);
             if (query.isWithVariables()) {
-                Converter.setVariables(taskDTO, taskService.getVariables(task.getId()));
+                Converter.setVariables(taskDTO, waitingVariables(mapping, task.getProcessInstanceId(), task.getId(), query.getVariableNames()));
             }
             list.add(taskDTO);
         });
-        return ResultDTO.buildSuccess(list, total);
+        return ResultDTO.buildSuccess(list, total.getTotal()).setTotalEstimated(total.isEstimated())
+            .setCursor(nextCursor(query, tasks, TaskSummary::getCreateTime, TaskSummary::getId));
+    }
+
+    /**
+     * 由读模型分页，withVariables时变量仍然整页批量加载
+     *
+     * @param query
+     * @param titleMatches
+     * @return
+     */
+    private ResultDTO<List<TaskDTO>> querySummaryReadModel(TaskQuery query, Set<String> titleMatches) {
+        ResultDTO<List<TaskDTO>> result;
+        try {
+            result = summaryReadModel.query(query, titleMatches);
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+        List<TaskDTO> list = result.getData();
+        Map<String, List<HistoricVariableInstance>> mapping = loadVariables(query, list, TaskDTO::getProcessInstanceId);
+        if (query.isWithVariables()) {
+            list.forEach(taskDTO -> Converter.setVariables(taskDTO, VariableLoader.toMap(mapping.get(taskDTO.getProcessInstanceId()))));
+        }
+        return result;
+    }
+
+    /**
+     * 待办的变量：流程变量 + 任务local变量。历史级别为none时历史表没有变量，回退到逐个任务读取运行时变量
+     *
+     * @param mapping           整页从历史表加载的变量
+     * @param processInstanceId
+     * @param taskId
+     * @param variableNames     为空时读取全部变量
+     * @return
+     */
+    private Map<String, Object> waitingVariables(Map<String, List<HistoricVariableInstance>> mapping, String processInstanceId, String taskId,
+                                                 Collection<String> variableNames) {
+        if (historyVariables) {
+            return VariableLoader.toMap(mapping.get(processInstanceId), taskId);
+        }
+        Set<String> names = Converter.withBuiltinVariables(variableNames);
+        return names == null ? taskService.getVariables(taskId) : taskService.getVariables(taskId, names);
+    }
+
+    /**
+     * 整页一次加载变量，按processInstanceId分组
+     *
+     * @param query
+     * @param tasks
+     * @param processInstanceId
+     * @return
+     */
+    private <T> Map<String, List<HistoricVariableInstance>> loadVariables(TaskQuery query, List<T> tasks, Function<T, String> processInstanceId) {
+        if (!query.isWithVariables() || tasks.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        return variableLoader.load(tasks.stream().map(processInstanceId).collect(Collectors.toList()), Converter.withBuiltinVariables(query.getVariableNames()));
     }
 
     @Override
     public ResultDTO<ProcessInstanceDTO> submitProcessor(String processDefinitionKey, SubmitDTO flowSubmitDTO) {
-        if (flowSubmitDTO.getUserId() == null || flowSubmitDTO.getUserName() == null) {
-            return ResultDTO.buildError(ResultDTO.ERROR_CODE_SYSTEM_ERROR, "miss user");
-        }
-        if (flowSubmitDTO.getAssignee() != null && flowSubmitDTO.getAssigneeName() == null) {
-            return ResultDTO.buildError(ResultDTO.ERROR_CODE_SYSTEM_ERROR, "miss assignee");
+        ResultDTO<ProcessInstanceDTO> invalid = validate(flowSubmitDTO);
+        if (invalid != null) {
+            return invalid;
         }
+        String requestKey = requestKey("S:" + processDefinitionKey + ":", flowSubmitDTO);
         try {
-            Map<String, Object> variables = new HashMap<>(8);
-            variables.put(Constants.TASK_USER_ID, flowSubmitDTO.getUserId());
-            variables.put(Constants.TASK_USER_NAME, flowSubmitDTO.getUserName());
-            variables.put(Constants.TASK_INITIATOR_ID, flowSubmitDTO.getUserId());
-            variables.put(Constants.TASK_INITIATOR_NAME, flowSubmitDTO.getUserName());
-            variables.put(Constants.TASK_ASSIGNEE, flowSubmitDTO.getAssignee());
-            variables.put(Constants.TASK_ASSIGNEE_NAME, flowSubmitDTO.getAssigneeName());
-            Authentication.setAuthenticatedUserId("" + flowSubmitDTO.getUserId());
-            if (flowSubmitDTO.getSkip() != null && flowSubmitDTO.getSkip()) {
-                variables.put(Constants.TASK_SKIP, true);
-                variables.put(Constants.TASK_SKIP_ENABLE, true);
-            }
-            if (flowSubmitDTO.getPass() != null) {
-                variables.put(Constants.TASK_PASS, true);
-            }
-            if (flowSubmitDTO.getVariables() != null) {
-                variables.putAll(flowSubmitDTO.getVariables());
-            }
-            variables.put(Constants.TASK_TITLE, flowSubmitDTO.getTitle());
-            ProcessInstance processInstance = runtimeService.startProcessInstanceByKey(processDefinitionKey, variables);
+            ResultDTO<ProcessInstanceDTO> submitted = submitted(requestKey);
+            if (submitted != null) {
+                return submitted;
+            }
+            ProcessInstance processInstance;
+            String authenticatedUserId = Authentication.getAuthenticatedUserId();
+            try {
+                processInstance = managementService.executeCommand(commandContext -> {
+                    ProcessInstance started = doSubmit(processDefinitionKey, flowSubmitDTO);
+                    remember(commandContext, requestKey, started.getProcessDefinitionId());
+                    return started;
+                });
+            } catch (Throwable e) {
+                // 并发的重复请求先提交，本次已回滚
+                submitted = submitted(requestKey);
+                if (submitted != null) {
+                    return submitted;
+                }
+                throw e;
+            } finally {
+                Authentication.setAuthenticatedUserId(authenticatedUserId);
+            }
+            if (titleIndex != null) {
+                titleIndex.put(processInstance.getId(), flowSubmitDTO.getTitle());
+            }
+            invalidateCount();
             return ResultDTO.buildSuccess(Converter.convert(processInstance));
         } catch (Throwable e) {
             logger.error("Error submitProcessor processDefinitionKey:" + processDefinitionKey + " " + flowSubmitDTO, e);
@@ -301,43 +945,201 @@ public class FlowServiceImpl implements FlowService, InitializingBean, Applicati
         }
     }
 
+    /**
+     * 每submitBatchSize个流程在一个命令(事务)内启动；配置了submitThreads时多个批次并行执行。
+     * 某一批失败时整批回滚，再逐个启动以得到每个流程的结果
+     * <p>
+     * 分批前先去掉已提交过的requestKey，同一次调用中重复的requestKey只启动第一个，其余返回第一个的结果
+     * <p>
+     * 等待批次时被中断或超过submitAllTimeout时取消未完成的批次，返回已有的结果，其余条目返回错误(unknown/not finished)，
+     * 已取消的批次可能已经提交，可以用requestKey重试
+     *
+     * @param processDefinitionKey
+     * @param submits
+     * @return 与submits顺序一致的结果
+     */
     @Override
-    public ResultDTO<Void> complete(String taskId, CompleteDTO completeDTO) {
-        if (completeDTO.getUserId() == null || completeDTO.getUserName() == null) {
+    public ResultDTO<List<ResultDTO<ProcessInstanceDTO>>> submitAll(String processDefinitionKey, List<SubmitDTO> submits) {
+        List<ResultDTO<ProcessInstanceDTO>> results = new ArrayList<>(Collections.<ResultDTO<ProcessInstanceDTO>>nCopies(submits.size(), null));
+        List<Integer> indexes = new ArrayList<>();
+        // 重复requestKey的下标 -> 第一次出现的下标
+        Map<Integer, Integer> duplicates = new HashMap<>(8);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            Map<String, Integer> firsts = new HashMap<>(8);
+            for (int i = 0; i < submits.size(); i++) {
+                ResultDTO<ProcessInstanceDTO> invalid = validate(submits.get(i));
+                results.set(i, invalid);
+                if (invalid != null) {
+                    continue;
+                }
+                String requestKey = requestKey("S:" + processDefinitionKey + ":", submits.get(i));
+                if (requestKey != null) {
+                    Integer first = firsts.putIfAbsent(requestKey, i);
+                    if (first != null) {
+                        duplicates.put(i, first);
+                        continue;
+                    }
+                    ResultDTO<ProcessInstanceDTO> submitted = submitted(requestKey);
+                    if (submitted != null) {
+                        results.set(i, submitted);
+                        continue;
+                    }
+                }
+                indexes.add(i);
+            }
+            for (int from = 0; from < indexes.size(); from += submitBatchSize) {
+                List<Integer> batch = indexes.subList(from, Math.min(from + submitBatchSize, indexes.size()));
+                Runnable runnable = () -> submitBatch(processDefinitionKey, submits, batch, results);
+                if (submitExecutor == null) {
+                    runnable.run();
+                } else {
+                    futures.add(submitExecutor.submit(runnable));
+                }
+            }
+            long deadline = System.currentTimeMillis() + submitAllTimeout;
+            try {
+                for (Future<?> future : futures) {
+                    if (submitAllTimeout > 0) {
+                        future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                    } else {
+                        future.get();
+                    }
+                }
+            } catch (InterruptedException | TimeoutException e) {
+                futures.forEach(future -> future.cancel(true));
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                logger.warn("submitAll not finished, processDefinitionKey:" + processDefinitionKey, e);
+                // 取消的批次仍可能写入结果，返回副本
+                List<ResultDTO<ProcessInstanceDTO>> partial = new ArrayList<>(results);
+                duplicates.forEach((i, first) -> partial.set(i, partial.get(first)));
+                for (int i = 0; i < partial.size(); i++) {
+                    if (partial.get(i) == null) {
+                        partial.set(i, ResultDTO.buildError(ResultDTO.ERROR_CODE_SYSTEM_ERROR, "unknown/not finished"));
+                    }
+                }
+                return ResultDTO.buildSuccess(partial);
+            }
+            duplicates.forEach((i, first) -> results.set(i, results.get(first)));
+            return ResultDTO.buildSuccess(results);
+        } catch (Throwable e) {
+            futures.forEach(future -> future.cancel(true));
+            logger.error("Error submitAll processDefinitionKey:" + processDefinitionKey, e);
+            return ResultDTO.buildError(ResultDTO.ERROR_CODE_SYSTEM_ERROR, e.getMessage());
+        } finally {
+            invalidateCount();
+        }
+    }
+
+    private void submitBatch(String processDefinitionKey, List<SubmitDTO> submits, List<Integer> batch, List<ResultDTO<ProcessInstanceDTO>> results) {
+        String authenticatedUserId = Authentication.getAuthenticatedUserId();
+        try {
+            List<ProcessInstance> processInstances = managementService.executeCommand(commandContext -> {
+                List<ProcessInstance> list = new ArrayList<>(batch.size());
+                batch.forEach(i -> {
+                    ProcessInstance started = doSubmit(processDefinitionKey, submits.get(i));
+                    remember(commandContext, requestKey("S:" + processDefinitionKey + ":", submits.get(i)), started.getProcessDefinitionId());
+                    list.add(started);
+                });
+                return list;
+            });
+            for (int i = 0; i < batch.size(); i++) {
+                ProcessInstance processInstance = processInstances.get(i);
+                if (titleIndex != null) {
+                    titleIndex.put(processInstance.getId(), submits.get(batch.get(i)).getTitle());
+                }
+                // 各批次写入不同的下标，结果列表大小不变
+                results.set(batch.get(i), ResultDTO.buildSuccess(Converter.convert(processInstance)));
+            }
+        } catch (Throwable e) {
+            logger.warn("Error submitAll batch, retry one by one, processDefinitionKey:" + processDefinitionKey, e);
+            batch.forEach(i -> results.set(i, submitProcessor(processDefinitionKey, submits.get(i))));
+        } finally {
+            Authentication.setAuthenticatedUserId(authenticatedUserId);
+        }
+    }
+
+    private ResultDTO<ProcessInstanceDTO> validate(SubmitDTO flowSubmitDTO) {
+        if (flowSubmitDTO.getUserId() == null || flowSubmitDTO.getUserName() == null) {
             return ResultDTO.buildError(ResultDTO.ERROR_CODE_SYSTEM_ERROR, "miss user");
         }
-        if (completeDTO.getAssignee() != null && completeDTO.getAssigneeName() == null) {
+        if (flowSubmitDTO.getAssignee() != null && flowSubmitDTO.getAssigneeName() == null) {
             return ResultDTO.buildError(ResultDTO.ERROR_CODE_SYSTEM_ERROR, "miss assignee");
         }
-        try {
-            Map<String, Object> variables = completeDTO.getVariables() == null ? new HashMap<>(8) : completeDTO.getVariables();
-            Map<String, Object> taskVariables = completeDTO.getTaskVariables() == null ? new HashMap<>(8) : completeDTO.getTaskVariables();
-            if (completeDTO.getAssignee() != null) {
-                variables.put(Constants.TASK_ASSIGNEE, completeDTO.getAssignee());
-                variables.put(Constants.TASK_ASSIGNEE_NAME, completeDTO.getAssigneeName());
-            }
-            if (completeDTO.getSkip() != null && completeDTO.getSkip()) {
-                variables.put(Constants.TASK_SKIP, true);
-                variables.put(Constants.TASK_SKIP_ENABLE, true);
-            }
-            if (completeDTO.getPass() != null) {
-                variables.put(Constants.TASK_PASS, true);
-            }
-            if (completeDTO.getVariables() != null) {
-                variables.putAll(completeDTO.getVariables());
-            }
-            taskVariables.putAll(variables);
-            taskVariables.put(Constants.TASK_USER_ID, completeDTO.getUserId());
-            taskVariables.put(Constants.TASK_USER_NAME, completeDTO.getUserName());
-            taskVariables.put(Constants.TASK_ASSIGNEE, completeDTO.getUserId());
-            taskVariables.put(Constants.TASK_ASSIGNEE_NAME, completeDTO.getUserName());
-            taskService.setVariablesLocal(taskId, taskVariables);
-            taskService.complete(taskId, variables);
-            return ResultDTO.buildSuccess(null);
-        } catch (Throwable e) {
-            logger.error("Error complete taskId:" + taskId + " " + completeDTO, e);
-            return ResultDTO.buildError(ResultDTO.ERROR_CODE_SYSTEM_ERROR, e.getMessage());
+        return null;
+    }
+
+    private ProcessInstance doSubmit(String processDefinitionKey, SubmitDTO flowSubmitDTO) {
+        Map<String, Object> variables = new HashMap<>(8);
+        variables.put(Constants.TASK_USER_ID, flowSubmitDTO.getUserId());
+        variables.put(Constants.TASK_USER_NAME, flowSubmitDTO.getUserName());
+        variables.put(Constants.TASK_INITIATOR_ID, flowSubmitDTO.getUserId());
+        variables.put(Constants.TASK_INITIATOR_NAME, flowSubmitDTO.getUserName());
+        variables.put(Constants.TASK_ASSIGNEE, flowSubmitDTO.getAssignee());
+        variables.put(Constants.TASK_ASSIGNEE_NAME, flowSubmitDTO.getAssigneeName());
+        Authentication.setAuthenticatedUserId("" + flowSubmitDTO.getUserId());
+        if (flowSubmitDTO.getSkip() != null && flowSubmitDTO.getSkip()) {
+            variables.put(Constants.TASK_SKIP, true);
+            variables.put(Constants.TASK_SKIP_ENABLE, true);
+        }
+        if (flowSubmitDTO.getPass() != null) {
+            variables.put(Constants.TASK_PASS, true);
+        }
+        if (flowSubmitDTO.getVariables() != null) {
+            variables.putAll(flowSubmitDTO.getVariables());
+        }
+        variables.put(Constants.TASK_TITLE, flowSubmitDTO.getTitle());
+        return runtimeService.startProcessInstanceByKey(processDefinitionKey, variables);
+    }
+
+    @Override
+    public ResultDTO<Void> complete(String taskId, CompleteDTO completeDTO) {
+        return taskCompleter.complete(taskId, completeDTO);
+    }
+
+    @Override
+    public ResultDTO<Map<String, ResultDTO<Void>>> completeAll(Map<String, CompleteDTO> completes) {
+        return taskCompleter.completeAll(completes);
+    }
+
+    @Override
+    public ResultDTO<Void> completeAsync(String taskId, String processInstanceId, CompleteDTO completeDTO) {
+        return taskCompleter.completeAsync(taskId, processInstanceId, completeDTO);
+    }
+
+    /**
+     * @param prefix
+     * @param requestDTO
+     * @return 未启用幂等或请求没有requestKey时返回null
+     */
+    private String requestKey(String prefix, RequestDTO requestDTO) {
+        return requestKeyStore == null || requestDTO.getRequestKey() == null ? null : prefix + requestDTO.getRequestKey();
+    }
+
+    private void remember(CommandContext commandContext, String requestKey, String value) {
+        if (requestKey != null) {
+            requestKeyStore.put(commandContext, requestKey, value);
+        }
+    }
+
+    /**
+     * @param requestKey
+     * @return 已提交过时返回第一次的结果，否则返回null
+     * @throws SQLException
+     */
+    private ResultDTO<ProcessInstanceDTO> submitted(String requestKey) throws SQLException {
+        if (requestKey == null) {
+            return null;
+        }
+        String processDefinitionId = requestKeyStore.get(requestKey);
+        if (processDefinitionId == null) {
+            return null;
         }
+        ProcessInstanceDTO processInstanceDTO = new ProcessInstanceDTO();
+        processInstanceDTO.setProcessDefinitionId(processDefinitionId);
+        return ResultDTO.buildSuccess(processInstanceDTO);
     }
 
     /**
@@ -352,42 +1154,24 @@ public class FlowServiceImpl implements FlowService, InitializingBean, Applicati
     @Override
     public ResultDTO<List<ProcessNodeDTO>> getByInstanceId(String processInstanceId, Options options) {
         try {
-            List<HistoricActivityInstance> tasks = historyService.createHistoricActivityInstanceQuery().processInstanceId(processInstanceId).list();
-            List<HistoricVariableInstance> histories = historyService.createHistoricVariableInstanceQuery().processInstanceId(processInstanceId).list();
-            Map<String, Map<String, Object>> mapping = new HashMap<>();
-            histories.forEach(historicVariableInstance -> {
-                String taskId = historicVariableInstance.getTaskId() == null ? "#" : historicVariableInstance.getTaskId();
-                Map<String, Object> variables = mapping.get(taskId);
-                if (variables == null) {
-                    variables = new HashMap<>(8);
-                    mapping.put(taskId, variables);
-                }
-                variables.put(historicVariableInstance.getVariableName(), historicVariableInstance.getValue());
-            });
-            List<ProcessNodeDTO> list = new ArrayList<>(tasks.size());
-            int i = 0;
-            for (HistoricActivityInstance t : tasks) {
-                ProcessNodeDTO node = Converter.convert(t);
-                node.setStartEvent(i++ == 0);
-                if (options.isWithVariables()) {
-                    Map<String, Object> variables = new HashMap<>(16);
-                    Map<String, Object> processVariables = mapping.get("#");
-                    if (processVariables != null) {
-                        variables.putAll(processVariables);
-                    }
-                    if (options.isReplaceLocalVariables() && t.getTaskId() != null) {
-                        Map<String, Object> taskVariables = mapping.get(t.getTaskId());
-                        if (taskVariables != null) {
-                            variables.putAll(taskVariables);
-                        }
-                    }
-                    if (options.isWithVariables() && (node.isStartEvent() || node.getActivityType().equals("userTask"))) {
-                        String formKey = node.isStartEvent() ? getStartFormKey(node.getProcessDefinitionId()).getData() : getFormKey(node.getProcessDefinitionId(), node.getActivityId()).getData();
-                        node.setFormKey(formKey);
-                    }
-                    Converter.setVariables(node, variables);
+            String key = timelineCache == null ? null : TimelineCache.key(processInstanceId, options);
+            if (key != null) {
+                List<ProcessNodeDTO> cached = timelineCache.get(key);
+                if (cached != null) {
+                    return ResultDTO.buildSuccess(cached);
                 }
-                list.add(node);
+            }
+            // 在读取节点之前判断是否已结束，读到的才是最终结果
+            boolean finished = key != null && historyService.createHistoricProcessInstanceQuery().processInstanceId(processInstanceId).finished().count() > 0;
+            List<HistoricActivityInstance> tasks = historyService.createHistoricActivityInstanceQuery().processInstanceId(processInstanceId).list();
+            List<HistoricVariableInstance> histories = Collections.emptyList();
+            if (options.isWithVariables()) {
+                histories = variableLoader.load(Collections.singleton(processInstanceId), Converter.withBuiltinVariables(options.getVariableNames()))
+                    .getOrDefault(processInstanceId, Collections.emptyList());
+            }
+            List<ProcessNodeDTO> list = toNodes(tasks, histories, options);
+            if (finished) {
+                timelineCache.put(key, list);
             }
             return ResultDTO.buildSuccess(list);
         } catch (Throwable e) {
@@ -396,6 +1180,96 @@ public class FlowServiceImpl implements FlowService, InitializingBean, Applicati
         }
     }
 
+    /**
+     * select RES.* from ACT_HI_ACTINST RES WHERE RES.PROC_INST_ID_ in (?, ...) order by RES.ID_ asc
+     * <p>
+     * select RES.* from ACT_HI_VARINST RES WHERE RES.PROC_INST_ID_ in (?, ...) order by RES.ID_ asc
+     *
+     * @param processInstanceIds
+     * @param options
+     * @return
+     */
+    @Override
+    public ResultDTO<Map<String, List<ProcessNodeDTO>>> getByInstanceIds(Collection<String> processInstanceIds, Options options) {
+        try {
+            Map<String, List<ProcessNodeDTO>> result = new LinkedHashMap<>();
+            Set<String> ids = new LinkedHashSet<>();
+            for (String processInstanceId : processInstanceIds) {
+                List<ProcessNodeDTO> cached = timelineCache == null ? null : timelineCache.get(TimelineCache.key(processInstanceId, options));
+                if (cached != null) {
+                    result.put(processInstanceId, cached);
+                } else {
+                    ids.add(processInstanceId);
+                }
+            }
+            if (ids.isEmpty()) {
+                return ResultDTO.buildSuccess(result);
+            }
+            Set<String> finished = timelineCache == null ? Collections.emptySet() : activityLoader.finished(ids);
+            Map<String, List<HistoricActivityInstance>> activities = activityLoader.load(ids);
+            Map<String, List<HistoricVariableInstance>> variables = options.isWithVariables()
+                ? variableLoader.load(ids, Converter.withBuiltinVariables(options.getVariableNames())) : Collections.emptyMap();
+            for (String processInstanceId : ids) {
+                List<HistoricActivityInstance> tasks = activities.get(processInstanceId);
+                if (tasks == null) {
+                    continue;
+                }
+                List<ProcessNodeDTO> list = toNodes(tasks, variables.getOrDefault(processInstanceId, Collections.emptyList()), options);
+                if (finished.contains(processInstanceId)) {
+                    timelineCache.put(TimelineCache.key(processInstanceId, options), list);
+                }
+                result.put(processInstanceId, list);
+            }
+            return ResultDTO.buildSuccess(result);
+        } catch (Throwable e) {
+            logger.error("Error getByInstanceIds:" + processInstanceIds, e);
+            return ResultDTO.buildError(ResultDTO.ERROR_CODE_SYSTEM_ERROR, e.getMessage());
+        }
+    }
+
+    /**
+     * 按节点组装变量：流程变量，replaceLocalVariables时再覆盖节点的local变量
+     *
+     * @param tasks      同一流程实例的节点，第一个为开始节点
+     * @param histories
+     * @param options
+     * @return
+     */
+    private List<ProcessNodeDTO> toNodes(List<HistoricActivityInstance> tasks, List<HistoricVariableInstance> histories, Options options) {
+        Map<String, VariableMap> mapping = new HashMap<>();
+        histories.forEach(historicVariableInstance -> {
+            String taskId = historicVariableInstance.getTaskId() == null ? "#" : historicVariableInstance.getTaskId();
+            VariableLoader.put(mapping.computeIfAbsent(taskId, k -> new VariableMap()), historicVariableInstance);
+        });
+        Map<String, Object> processVariables = mapping.get("#");
+        List<ProcessNodeDTO> list = new ArrayList<>(tasks.size());
+        int i = 0;
+        for (HistoricActivityInstance t : tasks) {
+            ProcessNodeDTO node = Converter.convert(t);
+            node.setStartEvent(i++ == 0);
+            if (options.isWithVariables()) {
+                // 流程变量层由所有节点共享，不逐个节点复制
+                Map<String, Object> taskVariables = options.isReplaceLocalVariables() && t.getTaskId() != null ? mapping.get(t.getTaskId()) : null;
+                Map<String, Object> variables = new LayeredMap(processVariables, taskVariables);
+                if (node.isStartEvent() || node.getActivityType().equals("userTask")) {
+                    // 取实例自身版本的表单，重新部署后缓存的结果也不会变化
+                    String formKey = node.isStartEvent() ? processDefinitionIndex.getStartFormKey(node.getProcessDefinitionId())
+                        : processDefinitionIndex.getFormKey(node.getProcessDefinitionId(), node.getActivityId());
+                    node.setFormKey(formKey);
+                }
+                Converter.setVariables(node, variables);
+            }
+            list.add(node);
+        }
+        return list;
+    }
+
+    private void invalidateCount() {
+        if (countCache != null) {
+            countCache.invalidateAll();
+        }
+    }
+
     private String getTaskDefinitionKey(String processDefinitionId) {
         int flag = processDefinitionId.indexOf(":");
         if (flag > 0) {
@@ -408,9 +1282,11 @@ public class FlowServiceImpl implements FlowService, InitializingBean, Applicati
     public ResultDTO<String> getStartFormKey(String processKey) {
         try {
             processKey = getTaskDefinitionKey(processKey);
-            String processDefinitionId = repositoryService.createProcessDefinitionQuery().processDefinitionKey(processKey).latestVersion().singleResult().getId();
-            String formKey = processEngineConfiguration.getFormService().getStartFormKey(processDefinitionId);
-            return ResultDTO.buildSuccess(formKey);
+            String processDefinitionId = processDefinitionIndex.latest(processKey);
+            if (processDefinitionId == null) {
+                return ResultDTO.buildError(ResultDTO.ERROR_CODE_SYSTEM_ERROR, "process definition not found:" + processKey);
+            }
+            return ResultDTO.buildSuccess(processDefinitionIndex.getStartFormKey(processDefinitionId));
         } catch (Throwable e) {
             logger.error("Error getFormKey:" + processKey, e);
             return ResultDTO.buildError(ResultDTO.ERROR_CODE_SYSTEM_ERROR, e.getMessage());
@@ -423,8 +1299,7 @@ public class FlowServiceImpl implements FlowService, InitializingBean, Applicati
             if (taskDefinitionKey == null) {
                 taskDefinitionKey = getTaskDefinitionKey(processDefinitionId);
             }
-            String formKey = processEngineConfiguration.getFormService().getTaskFormKey(processDefinitionId, taskDefinitionKey);
-            return ResultDTO.buildSuccess(formKey);
+            return ResultDTO.buildSuccess(processDefinitionIndex.getFormKey(processDefinitionId, taskDefinitionKey));
         } catch (Throwable e) {
             logger.error("Error getFormKey:" + processDefinitionId, e);
             return ResultDTO.buildError(ResultDTO.ERROR_CODE_SYSTEM_ERROR, e.getMessage());
@@ -443,4 +1318,250 @@ public class FlowServiceImpl implements FlowService, InitializingBean, Applicati
     public void setResources(org.springframework.core.io.Resource[] resources) {
         this.resources = resources;
     }
+
+    public void setDeployThreads(int deployThreads) {
+        this.deployThreads = deployThreads;
+    }
+
+    public void setLatestDefinitionTtl(long latestDefinitionTtl) {
+        this.latestDefinitionTtl = latestDefinitionTtl;
+    }
+
+    /**
+     * 开启后新写入的Map/List变量使用紧凑编码。
+     * <p>
+     * 行为变化：serializable类型在命令结束时会把读出后被原地修改的对象写回，紧凑编码的变量不会，修改后需要重新setVariable。
+     * 关闭后已用紧凑编码保存的变量仍可读取
+     *
+     * @param compactVariablesEnabled
+     */
+    public void setCompactVariablesEnabled(boolean compactVariablesEnabled) {
+        this.compactVariablesEnabled = compactVariablesEnabled;
+    }
+
+    public void setCompactVariableCompressThreshold(int compactVariableCompressThreshold) {
+        this.compactVariableCompressThreshold = compactVariableCompressThreshold;
+    }
+
+    public void setBlobStoreDirectory(String blobStoreDirectory) {
+        this.blobStoreDirectory = blobStoreDirectory;
+    }
+
+    public void setBlobStoreWriteEnabled(boolean blobStoreWriteEnabled) {
+        this.blobStoreWriteEnabled = blobStoreWriteEnabled;
+    }
+
+    public void setBlobThreshold(int blobThreshold) {
+        this.blobThreshold = blobThreshold;
+    }
+
+    /**
+     * 外部存储的读写/去重统计，未启用时为null
+     *
+     * @return
+     */
+    public BlobStore getBlobStore() {
+        return blobStore;
+    }
+
+    public void setVariableBatchSize(int variableBatchSize) {
+        this.variableBatchSize = variableBatchSize;
+    }
+
+    public void setSubmitBatchSize(int submitBatchSize) {
+        this.submitBatchSize = submitBatchSize;
+    }
+
+    public void setSubmitThreads(int submitThreads) {
+        this.submitThreads = submitThreads;
+    }
+
+    public void setSubmitAllTimeout(long submitAllTimeout) {
+        this.submitAllTimeout = submitAllTimeout;
+    }
+
+    /**
+     * 完成任务的配置，未设置时使用默认配置
+     *
+     * @param taskCompleter
+     */
+    public void setTaskCompleter(TaskCompleter taskCompleter) {
+        this.taskCompleter = taskCompleter;
+    }
+
+    /**
+     * 冲突重试、异步完成队列等统计
+     *
+     * @return
+     */
+    public TaskCompleter getTaskCompleter() {
+        return taskCompleter;
+    }
+
+    public void setStreamBatchSize(int streamBatchSize) {
+        this.streamBatchSize = streamBatchSize;
+    }
+
+    public void setRequestKeyTtl(long requestKeyTtl) {
+        this.requestKeyTtl = requestKeyTtl;
+    }
+
+    public void setRequestKeyCacheSize(int requestKeyCacheSize) {
+        this.requestKeyCacheSize = requestKeyCacheSize;
+    }
+
+    /**
+     * 幂等key的命中统计，未启用时为null
+     *
+     * @return
+     */
+    public RequestKeyStore getRequestKeyStore() {
+        return requestKeyStore;
+    }
+
+    public void setCountCacheTtl(long countCacheTtl) {
+        this.countCacheTtl = countCacheTtl;
+    }
+
+    public void setCountCacheSize(int countCacheSize) {
+        this.countCacheSize = countCacheSize;
+    }
+
+    public void setTimelineCacheWeight(long timelineCacheWeight) {
+        this.timelineCacheWeight = timelineCacheWeight;
+    }
+
+    public void setTimelineCacheDirectory(String timelineCacheDirectory) {
+        this.timelineCacheDirectory = timelineCacheDirectory;
+    }
+
+    public void setTimelineCacheDiskBytes(long timelineCacheDiskBytes) {
+        this.timelineCacheDiskBytes = timelineCacheDiskBytes;
+    }
+
+    /**
+     * 已结束流程缓存的命中统计，未启用时为null
+     *
+     * @return
+     */
+    public TimelineCache getTimelineCache() {
+        return timelineCache;
+    }
+
+    public void setResultCacheTtl(long resultCacheTtl) {
+        this.resultCacheTtl = resultCacheTtl;
+    }
+
+    public void setResultCacheSize(int resultCacheSize) {
+        this.resultCacheSize = resultCacheSize;
+    }
+
+    /**
+     * 结果缓存的命中/未命中/淘汰统计，未启用时为null
+     *
+     * @return
+     */
+    public ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    public void setInboxIndexEnabled(boolean inboxIndexEnabled) {
+        this.inboxIndexEnabled = inboxIndexEnabled;
+    }
+
+    /**
+     * 待办内存索引，未启用时为null
+     *
+     * @return
+     */
+    public InboxIndex getInboxIndex() {
+        return inboxIndex;
+    }
+
+    public void setTitleIndexEnabled(boolean titleIndexEnabled) {
+        this.titleIndexEnabled = titleIndexEnabled;
+    }
+
+    public void setTitleIndexMaxMatches(int titleIndexMaxMatches) {
+        this.titleIndexMaxMatches = titleIndexMaxMatches;
+    }
+
+    public void setSummaryReadModelEnabled(boolean summaryReadModelEnabled) {
+        this.summaryReadModelEnabled = summaryReadModelEnabled;
+    }
+
+    public void setSummaryReadModelRebuild(boolean summaryReadModelRebuild) {
+        this.summaryReadModelRebuild = summaryReadModelRebuild;
+    }
+
+    public void setCreateTables(boolean createTables) {
+        this.createTables = createTables;
+    }
+
+    public void setQueryExecutor(ExecutorService queryExecutor) {
+        this.queryExecutor = queryExecutor;
+    }
+
+    public void setQueryThreads(int queryThreads) {
+        this.queryThreads = queryThreads;
+    }
+
+    public void setQueryQueueSize(int queryQueueSize) {
+        this.queryQueueSize = queryQueueSize;
+    }
+
+    public void setQueryTimeout(long queryTimeout) {
+        this.queryTimeout = queryTimeout;
+    }
+
+    /**
+     * 正在统计或已统计完成的总数
+     */
+    private static class PendingTotal {
+        private final CountCache.Total total;
+        private final Future<CountCache.Total> future;
+        private final long timeout;
+
+        private PendingTotal(CountCache.Total total) {
+            this.total = total;
+            this.future = null;
+            this.timeout = 0;
+        }
+
+        private PendingTotal(Future<CountCache.Total> future, long timeout) {
+            this.total = null;
+            this.future = future;
+            this.timeout = timeout;
+        }
+
+        private ResultDTO<List<TaskDTO>> build(List<TaskDTO> list) {
+            CountCache.Total t = future == null ? total : get();
+            return ResultDTO.buildSuccess(list, t.getTotal()).setTotalEstimated(t.isEstimated());
+        }
+
+        private CountCache.Total get() {
+            try {
+                return future.get(timeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("count interrupted", e);
+            } catch (TimeoutException e) {
+                throw new IllegalStateException("count timeout:" + timeout + "ms", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException)e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        /**
+         * 分页查询失败或超时后取消总数统计
+         */
+        private void cancel() {
+            if (future != null && !future.isDone()) {
+                future.cancel(true);
+            }
+        }
+    }
 }
@@ -0,0 +1,226 @@
+package com.abb.flowable.service.impl;
+
+import com.abb.flowable.utils.NamedThreadFactory;
+import org.flowable.bpmn.converter.BpmnXMLConverter;
+import org.flowable.bpmn.model.BpmnModel;
+import org.flowable.bpmn.model.Process;
+import org.flowable.engine.RepositoryService;
+import org.flowable.engine.repository.Deployment;
+import org.flowable.engine.repository.ProcessDefinition;
+import org.flowable.validation.ProcessValidator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.util.StreamUtils;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+/**
+ * 启动时部署流程文件：每个文件一个部署，部署名为文件中的流程key，部署key为内容的SHA-256，不占用调用方可能使用的分类；
+ * 文件中流程的最新版本都来自内容相同的部署时不再部署
+ * <p>
+ * 所有文件先在线程池中并行读取、解析，并做与引擎部署时相同的XSD校验和流程校验(引擎配置的ProcessValidator)，
+ * 全部通过后再依次部署有变化的文件，部署时不再重复校验。非BPMN文件(如表单、图片)不解析，以文件名为部署名，
+ * 同名的最新部署内容不同时重新部署
+ *
+ * @author cenpeng.lwm
+ * @since 2026/10/17
+ */
+public class ResourceDeployer {
+    private static final String KEY_PREFIX = "sha256:";
+    private static final Logger logger = LoggerFactory.getLogger(ResourceDeployer.class);
+    private final RepositoryService repositoryService;
+    private final ProcessValidator processValidator;
+    private final int threads;
+
+    /**
+     * @param repositoryService
+     * @param processValidator  引擎配置的校验器，为null时只做XSD校验
+     * @param threads           解析、校验的线程数
+     */
+    public ResourceDeployer(RepositoryService repositoryService, ProcessValidator processValidator, int threads) {
+        this.repositoryService = repositoryService;
+        this.processValidator = processValidator;
+        this.threads = threads;
+    }
+
+    /**
+     * 返回的模型由BpmnXMLConverter解析，没有经过引擎的解析处理器(BpmnParseHandler)，
+     * 其中由解析处理器设置的状态(如process.getInitialFlowElement())为空，调用方不能依赖
+     *
+     * @param resources
+     * @return deploymentId -> 解析好的BPMN模型，包括未变化文件的已有部署；不含非BPMN文件
+     * @throws Exception 读取、解析失败，校验不通过或多个文件定义了同一个流程key
+     */
+    public Map<String, BpmnModel> deploy(Resource[] resources) throws Exception {
+        List<Parsed> parsed = parse(resources);
+        // 每个流程key只取最新版本，数量与流程数相同，不随历史部署增长
+        Map<String, ProcessDefinition> latest = new HashMap<>();
+        repositoryService.createProcessDefinitionQuery().latestVersion().list().forEach(definition -> latest.put(definition.getKey(), definition));
+        Map<String, BpmnModel> models = new HashMap<>();
+        int changed = 0;
+        for (Parsed resource : parsed) {
+            String deploymentId = unchanged(resource, latest);
+            if (deploymentId == null) {
+                deploymentId = repositoryService.createDeployment().name(resource.name).key(resource.key).addBytes(resource.fileName, resource.bytes)
+                    .disableBpmnValidation().deploy().getId();
+                logger.info("deploy process file:" + resource.description + " keys:" + resource.name + " deploymentId:" + deploymentId);
+                changed++;
+            }
+            if (resource.model != null) {
+                models.put(deploymentId, resource.model);
+            }
+        }
+        logger.info("process files:" + parsed.size() + " deployed:" + changed);
+        return models;
+    }
+
+    /**
+     * @return 文件中所有流程的最新版本都来自同一个内容相同的部署时返回该部署id，非BPMN文件为同名的最新部署内容相同时；否则返回null
+     */
+    private String unchanged(Parsed resource, Map<String, ProcessDefinition> latest) {
+        if (!resource.bpmn) {
+            List<Deployment> deployments = repositoryService.createDeploymentQuery().deploymentName(resource.name).orderByDeploymenTime().desc()
+                .listPage(0, 1);
+            return !deployments.isEmpty() && resource.key.equals(deployments.get(0).getKey()) ? deployments.get(0).getId() : null;
+        }
+        Set<String> deploymentIds = new HashSet<>();
+        for (String key : resource.keys) {
+            ProcessDefinition definition = latest.get(key);
+            if (definition == null) {
+                return null;
+            }
+            deploymentIds.add(definition.getDeploymentId());
+        }
+        if (deploymentIds.size() != 1) {
+            return null;
+        }
+        String deploymentId = deploymentIds.iterator().next();
+        Deployment deployment = repositoryService.createDeploymentQuery().deploymentId(deploymentId).singleResult();
+        return deployment != null && resource.key.equals(deployment.getKey()) ? deploymentId : null;
+    }
+
+    private List<Parsed> parse(Resource[] resources) throws Exception {
+        ExecutorService executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+            new NamedThreadFactory("flow-deploy-"));
+        try {
+            List<Future<Parsed>> futures = new ArrayList<>(resources.length);
+            for (Resource resource : resources) {
+                futures.add(executor.submit(() -> parse(resource)));
+            }
+            List<Parsed> parsed = new ArrayList<>(futures.size());
+            List<String> errors = new ArrayList<>();
+            Map<String, String> owners = new HashMap<>();
+            for (Future<Parsed> future : futures) {
+                Parsed resource = future.get();
+                parsed.add(resource);
+                errors.addAll(resource.errors);
+                if (resource.bpmn && resource.errors.isEmpty() && resource.keys.isEmpty()) {
+                    errors.add(resource.description + ": no executable process");
+                }
+                for (String key : resource.keys) {
+                    String other = owners.putIfAbsent(key, resource.description);
+                    if (other != null) {
+                        errors.add("process key " + key + " defined in both " + other + " and " + resource.description);
+                    }
+                }
+            }
+            if (!errors.isEmpty()) {
+                throw new IllegalStateException("invalid process files:\n" + String.join("\n", errors));
+            }
+            return parsed;
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception)e.getCause() : e;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Parsed parse(Resource resource) throws Exception {
+        String description = resource.getDescription();
+        byte[] bytes;
+        try (InputStream in = resource.getInputStream()) {
+            bytes = StreamUtils.copyToByteArray(in);
+        }
+        if (!isBpmn(resource)) {
+            return new Parsed(resource, bytes, null, Collections.emptyList());
+        }
+        BpmnXMLConverter converter = new BpmnXMLConverter();
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        XMLStreamReader reader = factory.createXMLStreamReader(new ByteArrayInputStream(bytes), "UTF-8");
+        try {
+            converter.validateModel(reader);
+        } catch (Exception e) {
+            return new Parsed(resource, bytes, null, Collections.singletonList(description + ": " + e.getMessage()));
+        } finally {
+            reader.close();
+        }
+        reader = factory.createXMLStreamReader(new ByteArrayInputStream(bytes), "UTF-8");
+        BpmnModel model;
+        try {
+            model = converter.convertToBpmnModel(reader);
+        } finally {
+            reader.close();
+        }
+        List<String> errors = processValidator == null ? Collections.emptyList() : processValidator.validate(model).stream()
+            .filter(error -> !error.isWarning()).map(error -> description + ": " + error).collect(Collectors.toList());
+        return new Parsed(resource, bytes, model, errors);
+    }
+
+    /**
+     * 与引擎BpmnDeployer识别BPMN资源的后缀一致
+     */
+    private static boolean isBpmn(Resource resource) {
+        String name = resource.getFilename();
+        return name != null && (name.endsWith(".bpmn20.xml") || name.endsWith(".bpmn"));
+    }
+
+    private static String sha256(byte[] bytes) throws Exception {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+        StringBuilder hex = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    private static class Parsed {
+        private final String fileName;
+        private final String description;
+        private final boolean bpmn;
+        /**
+         * 部署名：排序后的可执行流程key，逗号分隔；非BPMN文件为文件名
+         */
+        private final String name;
+        private final List<String> keys;
+        private final byte[] bytes;
+        /**
+         * 部署key：内容的SHA-256
+         */
+        private final String key;
+        private final BpmnModel model;
+        private final List<String> errors;
+
+        private Parsed(Resource resource, byte[] bytes, BpmnModel model, List<String> errors) throws Exception {
+            this.fileName = resource.getFilename();
+            this.description = resource.getDescription();
+            this.bpmn = isBpmn(resource);
+            this.keys = model == null ? Collections.emptyList() : model.getProcesses().stream().filter(Process::isExecutable).map(Process::getId)
+                .sorted().collect(Collectors.toList());
+            this.name = keys.isEmpty() ? fileName : String.join(",", keys);
+            this.bytes = bytes;
+            this.key = KEY_PREFIX + sha256(bytes);
+            this.model = model;
+            this.errors = errors;
+        }
+    }
+}
@@ -0,0 +1,410 @@
+package com.abb.flowable.service.impl;
+
+import com.abb.flowable.cache.RequestKeyStore;
+import com.abb.flowable.domain.CompleteDTO;
+import com.abb.flowable.domain.ResultDTO;
+import com.abb.flowable.queue.CompletionQueue;
+import com.abb.flowable.queue.Record;
+import com.abb.flowable.utils.Constants;
+import com.abb.flowable.utils.StripedLocks;
+import org.flowable.engine.ManagementService;
+import org.flowable.engine.ProcessEngine;
+import org.flowable.engine.TaskService;
+import org.flowable.engine.common.api.FlowableOptimisticLockingException;
+import org.flowable.task.api.Task;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * FlowService的完成任务部分：complete、completeAll、completeAsync，以及按流程实例加锁、冲突重试和异步完成队列
+ * <p>
+ * 通过setter配置后注入FlowServiceImpl，未注入时使用默认配置；引擎由FlowServiceImpl启动后调用{@link #init}
+ *
+ * @author cenpeng.lwm
+ * @since 2026/10/17
+ */
+public class TaskCompleter {
+    private static final Logger logger = LoggerFactory.getLogger(TaskCompleter.class);
+    private TaskService taskService;
+    private ManagementService managementService;
+    private RequestKeyStore requestKeyStore;
+    /**
+     * 有任务完成后调用，如使总数缓存失效
+     */
+    private Runnable onCompleted;
+    /**
+     * completeAll每个事务完成的任务数
+     */
+    private int batchSize = 100;
+    /**
+     * complete按processInstanceId分段加锁的锁数量，默认0不加锁；
+     * 开启后每次complete多一次任务查询来取得processInstanceId，只在同一流程实例并发完成频繁冲突时开启
+     */
+    private int lockStripes = 0;
+    private StripedLocks locks;
+    /**
+     * 乐观锁冲突后的重试次数
+     */
+    private int conflictRetries = 3;
+    /**
+     * 冲突重试的基础间隔(ms)，第n次重试在[base * 2^n / 2, base * 2^n]内随机等待
+     */
+    private long conflictRetryInterval = 50;
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder conflictRetried = new LongAdder();
+    /**
+     * completeAsync的日志文件，为空时不启用异步完成
+     */
+    private String journal;
+    /**
+     * 每条日志记录都fsync，关闭后机器掉电可能丢失已确认的请求
+     */
+    private boolean journalSync = true;
+    private int queueThreads = 4;
+    /**
+     * 最多未完成的异步完成请求数，超过时返回ERROR_CODE_QUEUE_FULL
+     */
+    private int queueCapacity = 10000;
+    private int queueRetries = 3;
+    private long queueRetryInterval = 1000;
+    private long journalCompactBytes = 64L * 1024 * 1024;
+    private CompletionQueue completionQueue;
+
+    /**
+     * @param processEngine
+     * @param requestKeyStore 未启用幂等时为null
+     * @param onCompleted
+     * @throws IOException 重放异步完成日志失败
+     */
+    public void init(ProcessEngine processEngine, RequestKeyStore requestKeyStore, Runnable onCompleted) throws IOException {
+        this.taskService = processEngine.getTaskService();
+        this.managementService = processEngine.getManagementService();
+        this.requestKeyStore = requestKeyStore;
+        this.onCompleted = onCompleted;
+        if (lockStripes > 0) {
+            locks = new StripedLocks(lockStripes);
+        }
+        if (journal != null) {
+            completionQueue = new CompletionQueue(new java.io.File(journal), journalSync, queueThreads, queueCapacity, queueRetries, queueRetryInterval,
+                journalCompactBytes, this::completeQueued);
+            completionQueue.start();
+        }
+    }
+
+    public void shutdown() {
+        if (completionQueue != null) {
+            completionQueue.shutdown(queueRetryInterval * (queueRetries + 1), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public ResultDTO<Void> complete(String taskId, CompleteDTO completeDTO) {
+        ResultDTO<Void> invalid = validate(completeDTO);
+        if (invalid != null) {
+            return invalid;
+        }
+        String requestKey = requestKey(taskId, completeDTO);
+        try {
+            if (requestKey != null && requestKeyStore.get(requestKey) != null) {
+                return ResultDTO.buildSuccess(null);
+            }
+            try {
+                completeWithRetry(taskId, locks == null ? null : processInstanceIdOf(taskId), completeDTO, conflictRetries);
+            } catch (Throwable e) {
+                if (requestKey != null && requestKeyStore.get(requestKey) != null) {
+                    return ResultDTO.buildSuccess(null);
+                }
+                throw e;
+            }
+            onCompleted.run();
+            return ResultDTO.buildSuccess(null);
+        } catch (FlowableOptimisticLockingException e) {
+            logger.warn("Conflict complete taskId:" + taskId + " after retries:" + conflictRetries, e);
+            return ResultDTO.buildError(ResultDTO.ERROR_CODE_CONFLICT, e.getMessage());
+        } catch (Throwable e) {
+            logger.error("Error complete taskId:" + taskId + " " + completeDTO, e);
+            return ResultDTO.buildError(ResultDTO.ERROR_CODE_SYSTEM_ERROR, e.getMessage());
+        }
+    }
+
+    /**
+     * 每batchSize个任务在一个命令(事务)内完成，最后统一flush；
+     * 某一批失败时整批回滚，再逐个调用{@link #complete}以得到每个任务的结果
+     * <p>
+     * 批量事务不加lockStripes的锁，也不做冲突重试：一个事务跨多个流程实例，按实例加锁容易死锁；
+     * 冲突时整批回滚，逐个完成时才按complete加锁和重试
+     *
+     * @param completes taskId -> CompleteDTO
+     * @return
+     */
+    public ResultDTO<Map<String, ResultDTO<Void>>> completeAll(Map<String, CompleteDTO> completes) {
+        if (completes == null) {
+            return ResultDTO.buildError(ResultDTO.ERROR_CODE_SYSTEM_ERROR, "miss completes");
+        }
+        Map<String, ResultDTO<Void>> results = new LinkedHashMap<>();
+        List<String> taskIds = new ArrayList<>();
+        try {
+            completes.forEach((taskId, completeDTO) -> {
+                ResultDTO<Void> invalid = taskId == null ? ResultDTO.buildError(ResultDTO.ERROR_CODE_SYSTEM_ERROR, "miss taskId") : validate(completeDTO);
+                results.put(taskId, invalid);
+                if (invalid == null) {
+                    taskIds.add(taskId);
+                }
+            });
+            for (int from = 0; from < taskIds.size(); from += batchSize) {
+                List<String> batch = taskIds.subList(from, Math.min(from + batchSize, taskIds.size()));
+                try {
+                    managementService.executeCommand(commandContext -> {
+                        batch.forEach(taskId -> doComplete(taskId, completes.get(taskId)));
+                        return null;
+                    });
+                    batch.forEach(taskId -> results.put(taskId, ResultDTO.buildSuccess(null)));
+                } catch (Throwable e) {
+                    logger.warn("Error completeAll batch, retry one by one:" + batch, e);
+                    batch.forEach(taskId -> results.put(taskId, complete(taskId, completes.get(taskId))));
+                }
+            }
+            return ResultDTO.buildSuccess(results);
+        } catch (Throwable e) {
+            logger.error("Error completeAll taskIds:" + completes.keySet(), e);
+            return ResultDTO.buildError(ResultDTO.ERROR_CODE_SYSTEM_ERROR, e.getMessage());
+        } finally {
+            onCompleted.run();
+        }
+    }
+
+    /**
+     * 校验后写入本地日志即返回，不查询任务；由后台线程按流程实例顺序完成，失败时按queueRetries重试，
+     * 任务不存在或重试用完后进入死信，见{@link CompletionQueue#getDeadLetters()}
+     *
+     * @param taskId
+     * @param processInstanceId 调用方已知的流程实例id，为null时只保证同一任务的顺序
+     * @param completeDTO
+     * @return
+     */
+    public ResultDTO<Void> completeAsync(String taskId, String processInstanceId, CompleteDTO completeDTO) {
+        if (completionQueue == null) {
+            return ResultDTO.buildError(ResultDTO.ERROR_CODE_SYSTEM_ERROR, "completion queue disabled");
+        }
+        ResultDTO<Void> invalid = validate(completeDTO);
+        if (invalid != null) {
+            return invalid;
+        }
+        String requestKey = requestKey(taskId, completeDTO);
+        try {
+            if (requestKey != null && requestKeyStore.get(requestKey) != null) {
+                return ResultDTO.buildSuccess(null);
+            }
+            if (!completionQueue.offer(taskId, processInstanceId, completeDTO)) {
+                return ResultDTO.buildError(ResultDTO.ERROR_CODE_QUEUE_FULL, "completion queue full, depth:" + completionQueue.getDepth());
+            }
+            return ResultDTO.buildSuccess(null);
+        } catch (Throwable e) {
+            logger.error("Error completeAsync taskId:" + taskId + " " + completeDTO, e);
+            return ResultDTO.buildError(ResultDTO.ERROR_CODE_SYSTEM_ERROR, e.getMessage());
+        }
+    }
+
+    /**
+     * 在后台通道线程上完成队列中的请求；冲突等失败由队列按queueRetries重试，这里不再重试，避免重试次数相乘
+     *
+     * @param record
+     */
+    private void completeQueued(Record record) {
+        String requestKey = requestKey(record.getTaskId(), record.getCompleteDTO());
+        try {
+            if (requestKey != null && requestKeyStore.get(requestKey) != null) {
+                // 重放的请求已经完成过
+                return;
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+        String processInstanceId = record.getProcessInstanceId();
+        if (processInstanceId == null && locks != null) {
+            processInstanceId = processInstanceIdOf(record.getTaskId());
+        }
+        completeWithRetry(record.getTaskId(), processInstanceId, record.getCompleteDTO(), 0);
+        onCompleted.run();
+    }
+
+    /**
+     * @param taskId
+     * @return 任务不存在时返回null
+     */
+    private String processInstanceIdOf(String taskId) {
+        Task task = taskService.createTaskQuery().taskId(taskId).singleResult();
+        return task == null ? null : task.getProcessInstanceId();
+    }
+
+    /**
+     * 同一流程实例在本JVM内串行完成；其他节点并发修改导致乐观锁冲突时，随机退避后重试
+     *
+     * @param taskId
+     * @param processInstanceId 为null时不加锁
+     * @param completeDTO
+     * @param retries           冲突后的重试次数
+     */
+    private void completeWithRetry(String taskId, String processInstanceId, CompleteDTO completeDTO, int retries) {
+        Lock lock = locks == null || processInstanceId == null ? null : locks.get(processInstanceId);
+        for (int attempt = 0; ; attempt++) {
+            if (lock != null) {
+                lock.lock();
+            }
+            try {
+                doComplete(taskId, completeDTO);
+                return;
+            } catch (FlowableOptimisticLockingException e) {
+                conflicts.increment();
+                if (attempt >= retries) {
+                    throw e;
+                }
+            } finally {
+                if (lock != null) {
+                    lock.unlock();
+                }
+            }
+            conflictRetried.increment();
+            long bound = conflictRetryInterval << attempt;
+            try {
+                Thread.sleep(ThreadLocalRandom.current().nextLong(bound / 2, bound + 1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted while retry complete taskId:" + taskId, e);
+            }
+        }
+    }
+
+    private ResultDTO<Void> validate(CompleteDTO completeDTO) {
+        if (completeDTO == null) {
+            return ResultDTO.buildError(ResultDTO.ERROR_CODE_SYSTEM_ERROR, "miss completeDTO");
+        }
+        if (completeDTO.getUserId() == null || completeDTO.getUserName() == null) {
+            return ResultDTO.buildError(ResultDTO.ERROR_CODE_SYSTEM_ERROR, "miss user");
+        }
+        if (completeDTO.getAssignee() != null && completeDTO.getAssigneeName() == null) {
+            return ResultDTO.buildError(ResultDTO.ERROR_CODE_SYSTEM_ERROR, "miss assignee");
+        }
+        return null;
+    }
+
+    private void doComplete(String taskId, CompleteDTO completeDTO) {
+        // 复制调用方的Map，重试、批量回退和异步队列会再次使用同一个CompleteDTO
+        Map<String, Object> variables = completeDTO.getVariables() == null ? new HashMap<>(8) : new HashMap<>(completeDTO.getVariables());
+        Map<String, Object> taskVariables = completeDTO.getTaskVariables() == null ? new HashMap<>(8) : new HashMap<>(completeDTO.getTaskVariables());
+        if (completeDTO.getAssignee() != null) {
+            variables.put(Constants.TASK_ASSIGNEE, completeDTO.getAssignee());
+            variables.put(Constants.TASK_ASSIGNEE_NAME, completeDTO.getAssigneeName());
+        }
+        if (completeDTO.getSkip() != null && completeDTO.getSkip()) {
+            variables.put(Constants.TASK_SKIP, true);
+            variables.put(Constants.TASK_SKIP_ENABLE, true);
+        }
+        if (completeDTO.getPass() != null) {
+            variables.put(Constants.TASK_PASS, true);
+        }
+        if (completeDTO.getVariables() != null) {
+            variables.putAll(completeDTO.getVariables());
+        }
+        taskVariables.putAll(variables);
+        taskVariables.put(Constants.TASK_USER_ID, completeDTO.getUserId());
+        taskVariables.put(Constants.TASK_USER_NAME, completeDTO.getUserName());
+        taskVariables.put(Constants.TASK_ASSIGNEE, completeDTO.getUserId());
+        taskVariables.put(Constants.TASK_ASSIGNEE_NAME, completeDTO.getUserName());
+        CompleteTaskCmd command = new CompleteTaskCmd(taskService, taskId, taskVariables, variables);
+        String requestKey = requestKey(taskId, completeDTO);
+        if (requestKey == null) {
+            managementService.executeCommand(command);
+            return;
+        }
+        managementService.executeCommand(commandContext -> {
+            command.execute(commandContext);
+            requestKeyStore.put(commandContext, requestKey, taskId);
+            return null;
+        });
+    }
+
+    /**
+     * @return 未启用幂等或请求没有requestKey时返回null
+     */
+    private String requestKey(String taskId, CompleteDTO completeDTO) {
+        return requestKeyStore == null || completeDTO.getRequestKey() == null ? null : "C:" + taskId + ":" + completeDTO.getRequestKey();
+    }
+
+    /**
+     * 异步完成队列的深度/延迟/重试统计，未启用时为null
+     *
+     * @return
+     */
+    public CompletionQueue getCompletionQueue() {
+        return completionQueue;
+    }
+
+    /**
+     * 发生乐观锁冲突的次数
+     */
+    public long getConflictCount() {
+        return conflicts.sum();
+    }
+
+    /**
+     * 因冲突重试的次数
+     */
+    public long getConflictRetriedCount() {
+        return conflictRetried.sum();
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @param lockStripes 大于0时complete按processInstanceId加锁，每次多一次任务查询
+     */
+    public void setLockStripes(int lockStripes) {
+        this.lockStripes = lockStripes;
+    }
+
+    public void setConflictRetries(int conflictRetries) {
+        this.conflictRetries = conflictRetries;
+    }
+
+    public void setConflictRetryInterval(long conflictRetryInterval) {
+        this.conflictRetryInterval = conflictRetryInterval;
+    }
+
+    public void setJournal(String journal) {
+        this.journal = journal;
+    }
+
+    public void setJournalSync(boolean journalSync) {
+        this.journalSync = journalSync;
+    }
+
+    public void setQueueThreads(int queueThreads) {
+        this.queueThreads = queueThreads;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public void setQueueRetries(int queueRetries) {
+        this.queueRetries = queueRetries;
+    }
+
+    public void setQueueRetryInterval(long queueRetryInterval) {
+        this.queueRetryInterval = queueRetryInterval;
+    }
+
+    public void setJournalCompactBytes(long journalCompactBytes) {
+        this.journalCompactBytes = journalCompactBytes;
+    }
+}
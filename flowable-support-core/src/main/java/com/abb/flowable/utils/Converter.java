@@ -1,6 +1,7 @@
 package com.abb.flowable.utils;
 
 import com.abb.flowable.domain.*;
+import com.abb.flowable.index.TaskSummary;
 import org.apache.commons.lang3.StringUtils;
 import org.flowable.engine.history.HistoricActivityInstance;
 import org.flowable.engine.history.HistoricProcessInstance;
@@ -10,7 +11,10 @@ import org.flowable.task.api.history.HistoricTaskInstance;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * @author cenpeng.lwm
@@ -97,6 +101,36 @@ public class Converter {
         return flowTaskDTO;
     }
 
+    public static TaskDTO convert(TaskSummary task) {
+        TaskDTO flowTaskDTO = new TaskDTO();
+        flowTaskDTO.setAssignee(task.getAssignee());
+        flowTaskDTO.setTaskId(task.getId());
+        flowTaskDTO.setProcessInstanceId(task.getProcessInstanceId());
+        flowTaskDTO.setProcessDefinitionId(task.getProcessDefinitionId());
+        flowTaskDTO.setTaskDefinitionKey(task.getTaskDefinitionKey());
+        flowTaskDTO.setFormKey(task.getFormKey());
+        setState(flowTaskDTO);
+        return flowTaskDTO;
+    }
+
+    /**
+     * 变量投影时加上setVariables用到的内置变量，为空表示加载全部
+     *
+     * @param variableNames
+     * @return
+     */
+    public static Set<String> withBuiltinVariables(Collection<String> variableNames) {
+        if (variableNames == null || variableNames.isEmpty()) {
+            return null;
+        }
+        Set<String> names = new HashSet<>(variableNames);
+        names.add(Constants.TASK_ASSIGNEE_NAME);
+        names.add(Constants.TASK_USER_ID);
+        names.add(Constants.TASK_USER_NAME);
+        names.add(Constants.TASK_TITLE);
+        return names;
+    }
+
     public static void setVariables(BaseDTO baseDTO, Map<String, Object> variables) {
         try {
             baseDTO.setAssigneeName((String)variables.get(Constants.TASK_ASSIGNEE_NAME));
@@ -0,0 +1,26 @@
+package com.abb.flowable.utils;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 带名称前缀的守护线程
+ *
+ * @author cenpeng.lwm
+ * @since 2026/10/17
+ */
+public class NamedThreadFactory implements ThreadFactory {
+    private final AtomicInteger index = new AtomicInteger();
+    private final String prefix;
+
+    public NamedThreadFactory(String prefix) {
+        this.prefix = prefix;
+    }
+
+    @Override
+    public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, prefix + index.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -0,0 +1,75 @@
+package com.abb.flowable.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * 分页游标，记录上一页最后一条的时间和id，按 时间 desc, id desc 排序向后翻页
+ *
+ * @author cenpeng.lwm
+ * @since 2026/10/17
+ */
+public class PageCursor {
+    private final long time;
+    private final String id;
+
+    public PageCursor(long time, String id) {
+        this.time = time;
+        this.id = id;
+    }
+
+    public static String encode(Date time, String id) {
+        if (time == null || id == null) {
+            return null;
+        }
+        String value = time.getTime() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static PageCursor decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        int flag = value.indexOf(':');
+        if (flag <= 0) {
+            throw new IllegalArgumentException("illegal cursor:" + cursor);
+        }
+        return new PageCursor(Long.parseLong(value.substring(0, flag)), value.substring(flag + 1));
+    }
+
+    /**
+     * 查询条件使用的时间上界，包含与游标同一时间的记录
+     *
+     * @return
+     */
+    public Date getSeekTime() {
+        return new Date(time + 1);
+    }
+
+    /**
+     * 按 时间 desc, id desc 排序时是否排在游标之后
+     *
+     * @param time
+     * @param id
+     * @return
+     */
+    public boolean isAfter(Date time, String id) {
+        if (time == null) {
+            return true;
+        }
+        if (time.getTime() != this.time) {
+            return time.getTime() < this.time;
+        }
+        return id.compareTo(this.id) < 0;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public String getId() {
+        return id;
+    }
+}
@@ -0,0 +1,56 @@
+package com.abb.flowable.utils;
+
+import com.abb.flowable.domain.TaskQuery;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * TaskQuery归一化后的缓存key
+ *
+ * @author cenpeng.lwm
+ * @since 2026/10/17
+ */
+public class QueryKey {
+    /**
+     * 过滤条件，不含分页
+     *
+     * @param query
+     * @return
+     */
+    public static String filter(TaskQuery query) {
+        StringBuilder key = new StringBuilder(128);
+        key.append(query.getType()).append('|')
+            .append(query.getState()).append('|')
+            .append(query.getUserId()).append('|')
+            .append(query.getProcessDefinitionKey()).append('|')
+            .append(query.getInitiatorId()).append('|')
+            .append(query.getTitle()).append('|')
+            .append(sorted(query.getProcessVariableValueEquals())).append('|')
+            .append(sorted(query.getProcessVariableValueNotEquals())).append('|')
+            .append(query.getTotalLimit());
+        return key.toString();
+    }
+
+    /**
+     * 过滤条件加上分页和返回内容
+     *
+     * @param query
+     * @return
+     */
+    public static String page(TaskQuery query) {
+        StringBuilder key = new StringBuilder(filter(query));
+        key.append('|').append(query.getStart())
+            .append('|').append(query.getLimit())
+            .append('|').append(query.getCursor())
+            .append('|').append(query.isNeedTotal())
+            .append('|').append(query.isWithVariables())
+            .append('|').append(query.getVariableNames() == null ? "" : new TreeSet<>(query.getVariableNames()).toString());
+        return key.toString();
+    }
+
+    private static String sorted(Map<String, Object> map) {
+        return map == null || map.isEmpty() ? "" : new TreeMap<>(map).toString();
+    }
+}
@@ -0,0 +1,24 @@
+package com.abb.flowable.utils;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 按key哈希分段的锁，不同key可能共用一把锁，锁的数量固定
+ *
+ * @author cenpeng.lwm
+ * @since 2026/10/17
+ */
+public class StripedLocks {
+    private final ReentrantLock[] locks;
+
+    public StripedLocks(int stripes) {
+        locks = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    public ReentrantLock get(String key) {
+        return locks[(key.hashCode() & 0x7fffffff) % locks.length];
+    }
+}
@@ -0,0 +1,46 @@
+package com.abb.flowable.utils;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * FLW_开头的扩展表，建表脚本见{@link #CREATE_SCRIPT}
+ *
+ * @author cenpeng.lwm
+ * @since 2026/10/17
+ */
+public class Tables {
+    public static final String CREATE_SCRIPT = "classpath:sql/flw.{mysql,h2}.create.sql";
+
+    /**
+     * 按原样、大写、小写依次查找表名
+     *
+     * @param connection
+     * @param table
+     * @return
+     * @throws SQLException
+     */
+    public static boolean exists(Connection connection, String table) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        for (String name : new String[] {table, table.toUpperCase(), table.toLowerCase()}) {
+            try (ResultSet rs = metaData.getTables(null, null, name, null)) {
+                if (rs.next()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 表不存在且未开启自动建表时抛出
+     *
+     * @param table
+     * @return
+     */
+    public static IllegalStateException notFound(String table) {
+        return new IllegalStateException("table not found:" + table + ", execute " + CREATE_SCRIPT + " or enable createTables");
+    }
+}
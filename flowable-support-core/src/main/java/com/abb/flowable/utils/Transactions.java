@@ -0,0 +1,27 @@
+package com.abb.flowable.utils;
+
+import org.flowable.engine.common.impl.cfg.TransactionContext;
+import org.flowable.engine.common.impl.cfg.TransactionState;
+import org.flowable.engine.common.impl.context.Context;
+
+/**
+ * 引擎事务工具
+ *
+ * @author cenpeng.lwm
+ * @since 2026/10/17
+ */
+public class Transactions {
+    /**
+     * 当前引擎事务提交后执行，不在事务中时立即执行；事务回滚时不执行
+     *
+     * @param runnable
+     */
+    public static void afterCommit(Runnable runnable) {
+        TransactionContext transactionContext = Context.getTransactionContext();
+        if (transactionContext == null) {
+            runnable.run();
+            return;
+        }
+        transactionContext.addTransactionListener(TransactionState.COMMITTED, commandContext -> runnable.run());
+    }
+}
@@ -0,0 +1,150 @@
+package com.abb.flowable.variable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按内容寻址的本地文件存储：文件名为内容的SHA-256，相同内容只保存一份
+ * <p>
+ * 文件只增不删，多个流程变量可能引用同一个文件；集群部署时目录需要放在共享存储上
+ *
+ * @author cenpeng.lwm
+ * @since 2026/10/17
+ */
+public class BlobStore {
+    private final File directory;
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder reads = new LongAdder();
+
+    public BlobStore(File directory) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalStateException("can not create directory:" + directory);
+        }
+        this.directory = directory;
+    }
+
+    /**
+     * @param bytes
+     * @return 内容的SHA-256
+     */
+    public String put(byte[] bytes) {
+        String hash = hash(bytes);
+        Path path = path(hash);
+        if (Files.exists(path)) {
+            duplicates.increment();
+            return hash;
+        }
+        try {
+            Files.createDirectories(path.getParent());
+            Path tmp = Files.createTempFile(path.getParent(), hash, ".tmp");
+            try {
+                // 先落盘再改名，掉电后不会留下名字正确但内容不完整的文件
+                try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    channel.force(true);
+                }
+                Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE);
+                syncDirectory(path.getParent());
+            } catch (FileAlreadyExistsException e) {
+                duplicates.increment();
+                return hash;
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error write blob:" + hash, e);
+        }
+        writes.increment();
+        return hash;
+    }
+
+    /**
+     * 读入堆内存，变量类型需要byte[]
+     *
+     * @param hash
+     * @return
+     */
+    public byte[] get(String hash) {
+        try {
+            byte[] bytes = Files.readAllBytes(path(hash));
+            reads.increment();
+            return bytes;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error read blob:" + hash, e);
+        }
+    }
+
+    /**
+     * 只读的内存映射视图，不复制到堆内存，适合直接写出到网络或文件；文件只增不删，映射在buffer被回收前一直有效
+     *
+     * @param hash
+     * @return
+     */
+    public ByteBuffer map(String hash) {
+        try (FileChannel channel = FileChannel.open(path(hash), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            reads.increment();
+            return buffer;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error read blob:" + hash, e);
+        }
+    }
+
+    public long getWriteCount() {
+        return writes.sum();
+    }
+
+    /**
+     * 内容已存在、未重复写入的次数
+     */
+    public long getDuplicateCount() {
+        return duplicates.sum();
+    }
+
+    public long getReadCount() {
+        return reads.sum();
+    }
+
+    /**
+     * 持久化目录项(改名)；不支持打开目录的平台上忽略
+     */
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    private Path path(String hash) {
+        if (hash.length() != 64 || !hash.chars().allMatch(c -> Character.digit(c, 16) >= 0)) {
+            throw new IllegalArgumentException("illegal blob hash:" + hash);
+        }
+        return directory.toPath().resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private static String hash(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
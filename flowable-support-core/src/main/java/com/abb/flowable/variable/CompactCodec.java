@@ -0,0 +1,307 @@
+package com.abb.flowable.variable;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 表单数据(Map/List及基本类型)的紧凑二进制编码，超过阈值时deflate压缩
+ * <p>
+ * 格式：flag(byte 0原文/1压缩) [原文长度(int)] 数据；每个值为tag(byte) + 内容，集合类型解码为编码前的同一个类
+ *
+ * @author cenpeng.lwm
+ * @since 2026/10/17
+ */
+public class CompactCodec {
+    private static final byte RAW = 0;
+    private static final byte DEFLATED = 1;
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INTEGER = 2;
+    private static final byte LONG = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte FLOAT = 5;
+    private static final byte SHORT = 6;
+    private static final byte BYTE = 7;
+    private static final byte BOOLEAN = 8;
+    private static final byte DATE = 9;
+    private static final byte DECIMAL = 10;
+    private static final byte BYTES = 11;
+    private static final byte HASH_MAP = 20;
+    private static final byte LINKED_HASH_MAP = 21;
+    private static final byte ARRAY_LIST = 22;
+    private static final byte HASH_SET = 23;
+    private static final byte LINKED_HASH_SET = 24;
+    private static final int MAX_DEPTH = 32;
+
+    /**
+     * 只接受能原样还原的类型，子类(如java.sql.Timestamp)交给其他变量类型
+     *
+     * @param value
+     * @return
+     */
+    public static boolean isEncodable(Object value) {
+        return isEncodable(value, 0);
+    }
+
+    private static boolean isEncodable(Object value, int depth) {
+        if (value == null) {
+            return true;
+        }
+        byte tag = tag(value);
+        if (tag < HASH_MAP) {
+            return tag >= 0;
+        }
+        if (depth >= MAX_DEPTH) {
+            return false;
+        }
+        if (value instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>)value).entrySet()) {
+                if (!isEncodable(entry.getKey(), depth + 1) || !isEncodable(entry.getValue(), depth + 1)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        for (Object item : (Collection<?>)value) {
+            if (!isEncodable(item, depth + 1)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static byte[] encode(Object value, int compressThreshold) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            DataOutputStream out = new DataOutputStream(bytes);
+            write(out, value);
+            out.flush();
+            byte[] raw = bytes.toByteArray();
+            if (raw.length < compressThreshold) {
+                byte[] result = new byte[raw.length + 1];
+                result[0] = RAW;
+                System.arraycopy(raw, 0, result, 1, raw.length);
+                return result;
+            }
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                deflater.setInput(raw);
+                deflater.finish();
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 2 + 16);
+                DataOutputStream header = new DataOutputStream(compressed);
+                header.writeByte(DEFLATED);
+                header.writeInt(raw.length);
+                byte[] buffer = new byte[4096];
+                while (!deflater.finished()) {
+                    compressed.write(buffer, 0, deflater.deflate(buffer));
+                }
+                return compressed.toByteArray();
+            } finally {
+                deflater.end();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static Object decode(byte[] data) {
+        try {
+            byte[] raw;
+            if (data[0] == DEFLATED) {
+                if (data.length < 5) {
+                    throw new DataFormatException("truncated header");
+                }
+                int length = ((data[1] & 0xff) << 24) | ((data[2] & 0xff) << 16) | ((data[3] & 0xff) << 8) | (data[4] & 0xff);
+                if (length < 0) {
+                    throw new DataFormatException("illegal length:" + length);
+                }
+                raw = new byte[length];
+                Inflater inflater = new Inflater();
+                try {
+                    inflater.setInput(data, 5, data.length - 5);
+                    int offset = 0;
+                    while (offset < length && !inflater.finished()) {
+                        int n = inflater.inflate(raw, offset, length - offset);
+                        // 输入已用完仍未解压出数据，数据被截断
+                        if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                            throw new DataFormatException("truncated data, inflated:" + offset + " expected:" + length);
+                        }
+                        offset += n;
+                    }
+                    if (offset < length) {
+                        throw new DataFormatException("inflated:" + offset + " expected:" + length);
+                    }
+                } finally {
+                    inflater.end();
+                }
+                return read(new DataInputStream(new ByteArrayInputStream(raw)));
+            }
+            return read(new DataInputStream(new ByteArrayInputStream(data, 1, data.length - 1)));
+        } catch (IOException | DataFormatException e) {
+            throw new IllegalStateException("illegal compact value", e);
+        }
+    }
+
+    private static byte tag(Object value) {
+        Class<?> type = value.getClass();
+        if (type == String.class) {
+            return STRING;
+        } else if (type == Integer.class) {
+            return INTEGER;
+        } else if (type == Long.class) {
+            return LONG;
+        } else if (type == Double.class) {
+            return DOUBLE;
+        } else if (type == Float.class) {
+            return FLOAT;
+        } else if (type == Short.class) {
+            return SHORT;
+        } else if (type == Byte.class) {
+            return BYTE;
+        } else if (type == Boolean.class) {
+            return BOOLEAN;
+        } else if (type == Date.class) {
+            return DATE;
+        } else if (type == BigDecimal.class) {
+            return DECIMAL;
+        } else if (type == byte[].class) {
+            return BYTES;
+        } else if (type == HashMap.class) {
+            return HASH_MAP;
+        } else if (type == LinkedHashMap.class) {
+            return LINKED_HASH_MAP;
+        } else if (type == ArrayList.class) {
+            return ARRAY_LIST;
+        } else if (type == HashSet.class) {
+            return HASH_SET;
+        } else if (type == LinkedHashSet.class) {
+            return LINKED_HASH_SET;
+        }
+        return -1;
+    }
+
+    private static void write(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+            return;
+        }
+        byte tag = tag(value);
+        out.writeByte(tag);
+        switch (tag) {
+            case STRING:
+                byte[] chars = ((String)value).getBytes(StandardCharsets.UTF_8);
+                out.writeInt(chars.length);
+                out.write(chars);
+                break;
+            case INTEGER:
+                out.writeInt((Integer)value);
+                break;
+            case LONG:
+                out.writeLong((Long)value);
+                break;
+            case DOUBLE:
+                out.writeDouble((Double)value);
+                break;
+            case FLOAT:
+                out.writeFloat((Float)value);
+                break;
+            case SHORT:
+                out.writeShort((Short)value);
+                break;
+            case BYTE:
+                out.writeByte((Byte)value);
+                break;
+            case BOOLEAN:
+                out.writeBoolean((Boolean)value);
+                break;
+            case DATE:
+                out.writeLong(((Date)value).getTime());
+                break;
+            case DECIMAL:
+                out.writeUTF(value.toString());
+                break;
+            case BYTES:
+                out.writeInt(((byte[])value).length);
+                out.write((byte[])value);
+                break;
+            case HASH_MAP:
+            case LINKED_HASH_MAP:
+                Map<?, ?> map = (Map<?, ?>)value;
+                out.writeInt(map.size());
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    write(out, entry.getKey());
+                    write(out, entry.getValue());
+                }
+                break;
+            case ARRAY_LIST:
+            case HASH_SET:
+            case LINKED_HASH_SET:
+                Collection<?> collection = (Collection<?>)value;
+                out.writeInt(collection.size());
+                for (Object item : collection) {
+                    write(out, item);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("unsupported type:" + value.getClass());
+        }
+    }
+
+    private static Object read(DataInputStream in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                byte[] chars = new byte[in.readInt()];
+                in.readFully(chars);
+                return new String(chars, StandardCharsets.UTF_8);
+            case INTEGER:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case DOUBLE:
+                return in.readDouble();
+            case FLOAT:
+                return in.readFloat();
+            case SHORT:
+                return in.readShort();
+            case BYTE:
+                return in.readByte();
+            case BOOLEAN:
+                return in.readBoolean();
+            case DATE:
+                return new Date(in.readLong());
+            case DECIMAL:
+                return new BigDecimal(in.readUTF());
+            case BYTES:
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                return bytes;
+            case HASH_MAP:
+            case LINKED_HASH_MAP:
+                int size = in.readInt();
+                Map<Object, Object> map = tag == HASH_MAP ? new HashMap<>(Math.max(16, size * 4 / 3 + 1)) : new LinkedHashMap<>(Math.max(16, size * 4 / 3 + 1));
+                for (int i = 0; i < size; i++) {
+                    map.put(read(in), read(in));
+                }
+                return map;
+            case ARRAY_LIST:
+            case HASH_SET:
+            case LINKED_HASH_SET:
+                int count = in.readInt();
+                Collection<Object> collection = tag == ARRAY_LIST ? new ArrayList<>(count) : tag == HASH_SET ? new HashSet<>() : new LinkedHashSet<>();
+                for (int i = 0; i < count; i++) {
+                    collection.add(read(in));
+                }
+                return collection;
+            default:
+                throw new IOException("unknown tag:" + tag);
+        }
+    }
+}
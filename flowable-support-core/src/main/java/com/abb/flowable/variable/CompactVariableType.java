@@ -0,0 +1,58 @@
+package com.abb.flowable.variable;
+
+import org.flowable.variable.api.types.ValueFields;
+import org.flowable.variable.api.types.VariableType;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Map/List类型变量用CompactCodec编码后存入ACT_GE_BYTEARRAY，代替java序列化
+ * <p>
+ * 注册在引擎默认类型之前，只接管能原样还原的值，其他值仍由serializable类型处理；
+ * 与serializable类型不同，读出的对象被原地修改后不会在命令结束时自动写回，需要重新setVariable。
+ * 该类型始终注册，关闭后不再写入新变量，已有变量仍可读取
+ *
+ * @author cenpeng.lwm
+ * @since 2026/10/17
+ */
+public class CompactVariableType implements VariableType {
+    public static final String TYPE_NAME = "compact";
+    private final int compressThreshold;
+    private final boolean enabled;
+
+    /**
+     * @param compressThreshold 编码后超过该字节数时压缩
+     * @param enabled           为false时只读取已有变量
+     */
+    public CompactVariableType(int compressThreshold, boolean enabled) {
+        this.compressThreshold = compressThreshold;
+        this.enabled = enabled;
+    }
+
+    @Override
+    public String getTypeName() {
+        return TYPE_NAME;
+    }
+
+    @Override
+    public boolean isCachable() {
+        return true;
+    }
+
+    @Override
+    public boolean isAbleToStore(Object value) {
+        return enabled && (value instanceof Map || value instanceof Collection) && CompactCodec.isEncodable(value);
+    }
+
+    @Override
+    public void setValue(Object value, ValueFields valueFields) {
+        valueFields.setBytes(value == null ? null : CompactCodec.encode(value, compressThreshold));
+    }
+
+    @Override
+    public Object getValue(ValueFields valueFields) {
+        byte[] bytes = valueFields.getBytes();
+        return bytes == null ? null : CompactCodec.decode(bytes);
+    }
+}
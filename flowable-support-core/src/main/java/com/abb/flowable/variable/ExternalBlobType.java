@@ -0,0 +1,63 @@
+package com.abb.flowable.variable;
+
+import org.flowable.variable.api.types.ValueFields;
+import org.flowable.variable.api.types.VariableType;
+
+/**
+ * 超过阈值的byte[]变量写入BlobStore，引擎表的TEXT_只保存内容哈希，不再占用ACT_GE_BYTEARRAY
+ * <p>
+ * 读取变量值时才从文件加载，加载变量时不会读取文件。该类型始终注册，关闭写入后已有的变量仍可读取
+ *
+ * @author cenpeng.lwm
+ * @since 2026/10/17
+ */
+public class ExternalBlobType implements VariableType {
+    public static final String TYPE_NAME = "externalBlob";
+    private final BlobStore blobStore;
+    private final int threshold;
+    private final boolean writeEnabled;
+
+    /**
+     * @param blobStore    未配置目录时为null，此时不写入，读取已有变量时报错
+     * @param threshold    大于等于该字节数的byte[]才写入BlobStore
+     * @param writeEnabled 为false时新变量不再写入BlobStore
+     */
+    public ExternalBlobType(BlobStore blobStore, int threshold, boolean writeEnabled) {
+        this.blobStore = blobStore;
+        this.threshold = threshold;
+        this.writeEnabled = writeEnabled;
+    }
+
+    @Override
+    public String getTypeName() {
+        return TYPE_NAME;
+    }
+
+    @Override
+    public boolean isCachable() {
+        return true;
+    }
+
+    @Override
+    public boolean isAbleToStore(Object value) {
+        return writeEnabled && blobStore != null && value instanceof byte[] && ((byte[])value).length >= threshold;
+    }
+
+    @Override
+    public void setValue(Object value, ValueFields valueFields) {
+        valueFields.setTextValue(value == null ? null : blobStore().put((byte[])value));
+    }
+
+    @Override
+    public Object getValue(ValueFields valueFields) {
+        String hash = valueFields.getTextValue();
+        return hash == null ? null : blobStore().get(hash);
+    }
+
+    private BlobStore blobStore() {
+        if (blobStore == null) {
+            throw new IllegalStateException("blobStoreDirectory not configured, can not access variable type:" + TYPE_NAME);
+        }
+        return blobStore;
+    }
+}
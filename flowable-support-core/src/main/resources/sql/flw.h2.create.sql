@@ -0,0 +1,35 @@
+-- flowable-support扩展表，配置了databaseTablePrefix时表名需加同样的前缀
+
+-- 发起/处理过列表读模型(summaryReadModelEnabled)，建表后首次启动在后台回填
+create table FLW_TASK_SUMMARY (
+    ID_ varchar(64) not null,
+    KIND_ char(1) not null,
+    PROC_INST_ID_ varchar(64) not null,
+    PROC_DEF_ID_ varchar(64),
+    PROC_DEF_KEY_ varchar(255),
+    OWNER_ID_ varchar(255),
+    TITLE_ varchar(1000),
+    INITIATOR_ID_ bigint,
+    USER_ID_ bigint,
+    USER_NAME_ varchar(255),
+    ASSIGNEE_ varchar(255),
+    ASSIGNEE_NAME_ varchar(255),
+    START_TIME_ timestamp null,
+    END_TIME_ timestamp null,
+    DURATION_ bigint,
+    primary key (ID_)
+);
+
+create index FLW_IDX_SUM_OWNER on FLW_TASK_SUMMARY (KIND_, OWNER_ID_, START_TIME_, ID_);
+create index FLW_IDX_SUM_OWNER_KEY on FLW_TASK_SUMMARY (KIND_, OWNER_ID_, PROC_DEF_KEY_, START_TIME_);
+create index FLW_IDX_SUM_PROC on FLW_TASK_SUMMARY (PROC_INST_ID_);
+
+-- 幂等请求key(requestKeyTtl大于0)，过期记录定时删除
+create table FLW_REQUEST_KEY (
+    KEY_ varchar(255) not null,
+    VALUE_ varchar(255),
+    CREATE_TIME_ bigint not null,
+    primary key (KEY_)
+);
+
+create index FLW_IDX_REQ_TIME on FLW_REQUEST_KEY (CREATE_TIME_);
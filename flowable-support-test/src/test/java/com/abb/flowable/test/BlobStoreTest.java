@@ -0,0 +1,34 @@
+package com.abb.flowable.test;
+
+import com.abb.flowable.variable.BlobStore;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 相同内容只写一次，读入堆内存和内存映射读取的内容一致
+ */
+public class BlobStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void putAndRead() throws Exception {
+        BlobStore store = new BlobStore(folder.getRoot());
+        byte[] bytes = "blob content".getBytes(StandardCharsets.UTF_8);
+        String hash = store.put(bytes);
+        Assert.assertEquals(hash, store.put(bytes.clone()));
+        Assert.assertEquals(1, store.getWriteCount());
+        Assert.assertEquals(1, store.getDuplicateCount());
+
+        Assert.assertArrayEquals(bytes, store.get(hash));
+        ByteBuffer mapped = store.map(hash);
+        Assert.assertTrue(mapped.isReadOnly());
+        Assert.assertEquals(ByteBuffer.wrap(bytes), mapped);
+        Assert.assertEquals(2, store.getReadCount());
+    }
+}
@@ -0,0 +1,110 @@
+package com.abb.flowable.test;
+
+import com.abb.flowable.variable.CompactCodec;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.*;
+
+/**
+ * 编码后原样还原，包括集合的具体类型和顺序
+ */
+public class CompactCodecTest {
+    @Test
+    public void roundTripRaw() {
+        Map<String, Object> value = form();
+        Object decoded = CompactCodec.decode(CompactCodec.encode(value, Integer.MAX_VALUE));
+        assertSame(value, decoded);
+    }
+
+    @Test
+    public void roundTripDeflated() {
+        Map<String, Object> value = form();
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            rows.add("row-" + i);
+        }
+        value.put("rows", rows);
+        byte[] encoded = CompactCodec.encode(value, 16);
+        Assert.assertEquals(1, encoded[0]);
+        assertSame(value, CompactCodec.decode(encoded));
+    }
+
+    @Test(timeout = 5000)
+    public void truncated() {
+        Map<String, Object> value = form();
+        value.put("text", String.join("", Collections.nCopies(200, "abcdefgh")));
+        byte[] encoded = CompactCodec.encode(value, 16);
+        for (int length : new int[] {3, 6, encoded.length / 2}) {
+            try {
+                CompactCodec.decode(Arrays.copyOf(encoded, length));
+                Assert.fail("decoded truncated data, length:" + length);
+            } catch (IllegalStateException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void encodable() {
+        Assert.assertTrue(CompactCodec.isEncodable(form()));
+        Map<String, Object> time = new HashMap<>();
+        time.put("time", new Timestamp(0));
+        Assert.assertFalse(CompactCodec.isEncodable(time));
+        Assert.assertFalse(CompactCodec.isEncodable(new ArrayList<>(Collections.singletonList(new Object()))));
+        Assert.assertFalse(CompactCodec.isEncodable(Collections.singletonList("unmodifiable")));
+        Map<String, Object> nested = new HashMap<>();
+        Map<String, Object> current = nested;
+        for (int i = 0; i < 40; i++) {
+            Map<String, Object> child = new HashMap<>();
+            current.put("child", child);
+            current = child;
+        }
+        Assert.assertFalse(CompactCodec.isEncodable(nested));
+    }
+
+    private static Map<String, Object> form() {
+        Map<String, Object> value = new LinkedHashMap<>();
+        value.put("string", "表单");
+        value.put("int", 1);
+        value.put("long", 2L);
+        value.put("double", 3.5d);
+        value.put("float", 4.5f);
+        value.put("short", (short)5);
+        value.put("byte", (byte)6);
+        value.put("boolean", true);
+        value.put("date", new Date(1000));
+        value.put("decimal", new BigDecimal("12345.6789"));
+        value.put("bytes", new byte[] {1, 2, 3});
+        value.put("null", null);
+        value.put("list", new ArrayList<>(Arrays.asList("a", 1, null)));
+        value.put("set", new LinkedHashSet<>(Arrays.asList("x", "y")));
+        value.put("hashSet", new HashSet<>(Arrays.asList(1L, 2L)));
+        Map<String, Object> child = new HashMap<>();
+        child.put("k", "v");
+        value.put("map", child);
+        return value;
+    }
+
+    private static void assertSame(Object expected, Object actual) {
+        Assert.assertEquals(expected.getClass(), actual.getClass());
+        if (expected instanceof Map) {
+            Map<?, ?> e = (Map<?, ?>)expected;
+            Map<?, ?> a = (Map<?, ?>)actual;
+            Assert.assertEquals(new ArrayList<>(e.keySet()), new ArrayList<>(a.keySet()));
+            e.forEach((k, v) -> {
+                if (v == null) {
+                    Assert.assertNull(a.get(k));
+                } else {
+                    assertSame(v, a.get(k));
+                }
+            });
+        } else if (expected instanceof byte[]) {
+            Assert.assertArrayEquals((byte[])expected, (byte[])actual);
+        } else {
+            Assert.assertEquals(expected, actual);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.abb.flowable.test;
+
+import com.abb.flowable.domain.CompleteDTO;
+import com.abb.flowable.queue.CompletionJournal;
+import com.abb.flowable.queue.CompletionQueue;
+import com.abb.flowable.queue.Record;
+import org.flowable.engine.common.api.FlowableObjectNotFoundException;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 日志重放只返回未结束的记录，崩溃截断的尾部忽略；重试用完的请求进入死信
+ */
+public class CompletionJournalTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void replayPending() throws Exception {
+        File file = folder.newFile("journal");
+        try (CompletionJournal journal = new CompletionJournal(file, false)) {
+            journal.append(record(1, "t1"));
+            journal.append(record(2, "t2"));
+            journal.append(record(3, "t3"));
+            journal.done(2);
+        }
+        try (CompletionJournal journal = new CompletionJournal(file, false)) {
+            Assert.assertEquals(Arrays.asList("t1", "t3"), taskIds(journal.replay()));
+            Assert.assertEquals("v1", journal.replay().get(0).getCompleteDTO().getVariables().get("k"));
+        }
+    }
+
+    @Test
+    public void ignoreTruncatedTail() throws Exception {
+        File file = folder.newFile("journal");
+        long complete;
+        try (CompletionJournal journal = new CompletionJournal(file, false)) {
+            journal.append(record(1, "t1"));
+            complete = journal.length();
+            journal.append(record(2, "t2"));
+        }
+        for (long length = file.length() - 1; length > complete; length -= 7) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(length);
+            }
+            try (CompletionJournal journal = new CompletionJournal(file, false)) {
+                Assert.assertEquals("length:" + length, Arrays.asList("t1"), taskIds(journal.replay()));
+            }
+        }
+    }
+
+    @Test
+    public void compact() throws Exception {
+        File file = folder.newFile("journal");
+        try (CompletionJournal journal = new CompletionJournal(file, false)) {
+            for (int i = 1; i <= 100; i++) {
+                journal.append(record(i, "t" + i));
+            }
+            for (int i = 1; i < 100; i++) {
+                journal.done(i);
+            }
+            long before = journal.length();
+            journal.compact(journal.replay());
+            Assert.assertTrue(journal.length() < before);
+            Assert.assertEquals(Arrays.asList("t100"), taskIds(journal.replay()));
+            // 重写后仍可追加
+            journal.append(record(101, "t101"));
+            journal.done(100);
+        }
+        try (CompletionJournal journal = new CompletionJournal(file, false)) {
+            Assert.assertEquals(Arrays.asList("t101"), taskIds(journal.replay()));
+        }
+        Assert.assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void deadLetters() throws Exception {
+        File file = new File(folder.getRoot(), "queue");
+        List<String> handled = new CopyOnWriteArrayList<>();
+        CompletionQueue queue = new CompletionQueue(file, false, 2, 100, 2, 1, 1 << 20, record -> {
+            handled.add(record.getTaskId());
+            if (record.getTaskId().startsWith("missing")) {
+                throw new FlowableObjectNotFoundException("task not found");
+            }
+            if (record.getTaskId().startsWith("bad")) {
+                throw new IllegalStateException("always fail");
+            }
+        });
+        queue.start();
+        Assert.assertTrue(queue.offer("ok", "p1", dto()));
+        Assert.assertTrue(queue.offer("bad", "p1", dto()));
+        Assert.assertTrue(queue.offer("missing", null, dto()));
+        await(queue);
+        // 任务不存在不重试，其他失败重试2次
+        Assert.assertEquals(1, handled.stream().filter("missing"::equals).count());
+        Assert.assertEquals(3, handled.stream().filter("bad"::equals).count());
+        Assert.assertEquals(2, queue.getDeadLetterCount());
+        List<Record> dead = queue.getDeadLetters();
+        Assert.assertEquals(Arrays.asList("bad", "missing"), taskIds(dead));
+        Assert.assertTrue(dead.get(0).getError().contains("always fail"));
+        queue.shutdown(1, TimeUnit.SECONDS);
+
+        // 死信在重启后保留
+        queue = new CompletionQueue(file, false, 2, 100, 0, 1, 1 << 20, record -> handled.add(record.getTaskId()));
+        queue.start();
+        Assert.assertEquals(0, queue.getDepth());
+        Assert.assertEquals(2, queue.getDeadLetterCount());
+        Assert.assertTrue(queue.retryDeadLetter(dead.get(0).getSeq()));
+        Assert.assertFalse(queue.retryDeadLetter(dead.get(0).getSeq()));
+        Assert.assertTrue(queue.discardDeadLetter(dead.get(1).getSeq()));
+        await(queue);
+        Assert.assertEquals(4, handled.stream().filter("bad"::equals).count());
+        Assert.assertEquals(0, queue.getDeadLetterCount());
+        Assert.assertTrue(queue.getDeadLetters().isEmpty());
+        queue.shutdown(1, TimeUnit.SECONDS);
+    }
+
+    private static void await(CompletionQueue queue) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (queue.getDepth() > 0) {
+            Assert.assertTrue("queue not drained", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static Record record(long seq, String taskId) {
+        return new Record(seq, taskId, "p1", dto(), System.currentTimeMillis());
+    }
+
+    private static CompleteDTO dto() {
+        CompleteDTO dto = new CompleteDTO();
+        dto.setUserId(1L);
+        dto.addVariable("k", "v1");
+        return dto;
+    }
+
+    private static List<String> taskIds(List<Record> records) {
+        return records.stream().map(Record::getTaskId).collect(Collectors.toCollection(ArrayList::new));
+    }
+}
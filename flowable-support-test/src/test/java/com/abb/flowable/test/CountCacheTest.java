@@ -0,0 +1,44 @@
+package com.abb.flowable.test;
+
+import com.abb.flowable.cache.CountCache;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 失效后版本号变化，失效前开始计算的总数不再写入
+ */
+public class CountCacheTest {
+    @Test
+    public void generation() {
+        CountCache cache = new CountCache(60000, 100);
+        long generation = cache.generation();
+        cache.put("k1", generation, new CountCache.Total(10, false));
+        Assert.assertEquals(10, cache.get("k1").getTotal());
+
+        long before = cache.generation();
+        cache.invalidateAll();
+        Assert.assertTrue(before != cache.generation());
+        Assert.assertNull(cache.get("k1"));
+        // 失效前开始的计算
+        cache.put("k1", before, new CountCache.Total(10, false));
+        Assert.assertNull(cache.get("k1"));
+
+        cache.put("k1", cache.generation(), new CountCache.Total(11, true));
+        Assert.assertEquals(11, cache.get("k1").getTotal());
+        Assert.assertTrue(cache.get("k1").isEstimated());
+    }
+
+    @Test
+    public void expireAndSize() {
+        CountCache expired = new CountCache(-1, 100);
+        expired.put("k1", expired.generation(), new CountCache.Total(1, false));
+        Assert.assertNull(expired.get("k1"));
+
+        CountCache cache = new CountCache(60000, 2);
+        cache.put("k1", cache.generation(), new CountCache.Total(1, false));
+        cache.put("k2", cache.generation(), new CountCache.Total(2, false));
+        cache.put("k3", cache.generation(), new CountCache.Total(3, false));
+        Assert.assertEquals(3, cache.get("k3").getTotal());
+        Assert.assertNull(cache.get("k1"));
+    }
+}
@@ -0,0 +1,62 @@
+package com.abb.flowable.test;
+
+import com.abb.flowable.domain.SubmitDTO;
+import com.abb.flowable.service.impl.FlowServiceImpl;
+import org.flowable.engine.ProcessEngines;
+import org.flowable.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.flowable.engine.impl.cfg.StandaloneInMemProcessEngineConfiguration;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * 基于H2内存库启动引擎和FlowServiceImpl，每个实例使用独立的库
+ */
+public class FlowEngineSupport {
+    private final String name = "flow-" + UUID.randomUUID();
+    private final ProcessEngineConfigurationImpl configuration;
+    private final FlowServiceImpl flowService = new FlowServiceImpl();
+
+    public FlowEngineSupport() {
+        configuration = new StandaloneInMemProcessEngineConfiguration();
+        configuration.setEngineName(name);
+        configuration.setJdbcUrl("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        configuration.setAsyncExecutorActivate(false);
+        flowService.setProcessEngineConfiguration(configuration);
+    }
+
+    public FlowServiceImpl start(Consumer<FlowServiceImpl> setup, String... resources) throws Exception {
+        Resource[] array = new Resource[resources.length];
+        for (int i = 0; i < resources.length; i++) {
+            array[i] = new ClassPathResource(resources[i]);
+        }
+        flowService.setResources(array);
+        flowService.setDeployThreads(2);
+        setup.accept(flowService);
+        flowService.afterPropertiesSet();
+        return flowService;
+    }
+
+    public ProcessEngineConfigurationImpl getConfiguration() {
+        return configuration;
+    }
+
+    public void close() {
+        flowService.destroy();
+        if (ProcessEngines.getProcessEngine(name) != null) {
+            ProcessEngines.getProcessEngine(name).close();
+        }
+    }
+
+    public static SubmitDTO submit(long userId, String title) {
+        SubmitDTO submitDTO = new SubmitDTO();
+        submitDTO.setUserId(userId);
+        submitDTO.setUserName("user" + userId);
+        submitDTO.setAssignee("" + userId);
+        submitDTO.setAssigneeName("user" + userId);
+        submitDTO.setTitle(title);
+        return submitDTO;
+    }
+}
@@ -0,0 +1,112 @@
+package com.abb.flowable.test;
+
+import com.abb.flowable.domain.TaskDTO;
+import com.abb.flowable.domain.TaskQuery;
+import com.abb.flowable.index.InboxIndex;
+import com.abb.flowable.index.TaskSummary;
+import com.abb.flowable.service.impl.FlowServiceImpl;
+import org.flowable.engine.IdentityService;
+import org.flowable.engine.TaskService;
+import org.flowable.idm.api.Group;
+import org.flowable.task.api.Task;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 索引的待办与taskCandidateOrAssigned查询数据库的结果一致，包括候选组
+ */
+public class InboxIndexTest {
+    private static final List<String> USERS = Arrays.asList("1", "2", "3", "5", "6", "7");
+    private FlowEngineSupport engine;
+    private FlowServiceImpl flowService;
+    private TaskService taskService;
+    private IdentityService identityService;
+
+    @Before
+    public void setUp() throws Exception {
+        engine = new FlowEngineSupport();
+        flowService = engine.start(service -> service.setInboxIndexEnabled(true), "processes/approve.bpmn20.xml", "processes/claim.bpmn20.xml");
+        taskService = engine.getConfiguration().getTaskService();
+        identityService = engine.getConfiguration().getIdentityService();
+        member("5", "g1");
+        member("6", "g2");
+    }
+
+    @After
+    public void tearDown() {
+        engine.close();
+    }
+
+    @Test
+    public void candidateUsersAndGroups() {
+        Assert.assertTrue(flowService.submitProcessor("approve", FlowEngineSupport.submit(1L, "a1")).isSuccess());
+        Assert.assertTrue(flowService.submitProcessor("claim", FlowEngineSupport.submit(1L, "c1")).isSuccess());
+        Assert.assertTrue(flowService.submitProcessor("claim", FlowEngineSupport.submit(1L, "c2")).isSuccess());
+        assertSameAsDatabase();
+        Assert.assertEquals(2, inbox("5").size());
+        Assert.assertEquals(0, inbox("6").size());
+
+        List<Task> claims = taskService.createTaskQuery().processDefinitionKey("claim").orderByTaskId().asc().list();
+        taskService.claim(claims.get(0).getId(), "5");
+        assertSameAsDatabase();
+        Assert.assertEquals(Arrays.asList(claims.get(1).getId()), inbox("2"));
+
+        taskService.deleteCandidateGroup(claims.get(1).getId(), "g1");
+        assertSameAsDatabase();
+        Assert.assertEquals(Arrays.asList(claims.get(0).getId()), inbox("5"));
+
+        taskService.complete(claims.get(0).getId());
+        assertSameAsDatabase();
+        Assert.assertEquals(0, inbox("5").size());
+    }
+
+    @Test
+    public void rebuild() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(flowService.submitProcessor("approve", FlowEngineSupport.submit(1L, "a" + i)).isSuccess());
+            Assert.assertTrue(flowService.submitProcessor("claim", FlowEngineSupport.submit(1L, "c" + i)).isSuccess());
+        }
+        InboxIndex rebuilt = new InboxIndex(userId -> identityService.createGroupQuery().groupMember(userId).list().stream().map(Group::getId)
+            .collect(Collectors.toList()));
+        rebuilt.rebuild(engine.getConfiguration().getDataSource(), engine.getConfiguration().getDatabaseTablePrefix());
+        for (String userId : USERS) {
+            Assert.assertEquals(userId, ids(flowService.getInboxIndex().list(userId, null)), ids(rebuilt.list(userId, null)));
+            Assert.assertEquals(userId, ids(flowService.getInboxIndex().list(userId, "claim")), ids(rebuilt.list(userId, "claim")));
+        }
+    }
+
+    private void assertSameAsDatabase() {
+        for (String userId : USERS) {
+            Assert.assertTrue(flowService.getInboxIndex().accept(query(userId)));
+            List<String> expected = taskService.createTaskQuery().taskCandidateOrAssigned(userId).orderByTaskCreateTime().desc().orderByTaskId().desc()
+                .list().stream().map(Task::getId).collect(Collectors.toList());
+            Assert.assertEquals(userId, expected, inbox(userId));
+        }
+    }
+
+    private List<String> inbox(String userId) {
+        return flowService.createTaskQuery(query(userId)).getData().stream().map(TaskDTO::getTaskId).collect(Collectors.toList());
+    }
+
+    private static TaskQuery query(String userId) {
+        return new TaskQuery().setUserId(userId).setLimit(100).setWithVariables(false);
+    }
+
+    private static List<String> ids(List<TaskSummary> tasks) {
+        return tasks.stream().map(TaskSummary::getId).collect(Collectors.toList());
+    }
+
+    private void member(String userId, String groupId) {
+        identityService.saveUser(identityService.newUser(userId));
+        if (identityService.createGroupQuery().groupId(groupId).count() == 0) {
+            identityService.saveGroup(identityService.newGroup(groupId));
+        }
+        identityService.createMembership(userId, groupId);
+    }
+}
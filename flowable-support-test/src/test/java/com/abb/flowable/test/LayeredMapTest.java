@@ -0,0 +1,128 @@
+package com.abb.flowable.test;
+
+import com.abb.flowable.domain.LayeredMap;
+import com.abb.flowable.domain.VariableMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 上层覆盖下层，写入和删除不影响共享层
+ */
+public class LayeredMapTest {
+    @Test
+    public void shadowing() {
+        LayeredMap map = new LayeredMap(map("a", "base-a", "b", "base-b"), map("b", "overlay-b", "c", "overlay-c"));
+        Assert.assertEquals("base-a", map.get("a"));
+        Assert.assertEquals("overlay-b", map.get("b"));
+        Assert.assertEquals("overlay-c", map.get("c"));
+        Assert.assertEquals(3, map.size());
+        Assert.assertEquals(map("a", "base-a", "b", "overlay-b", "c", "overlay-c"), new HashMap<>(map));
+
+        Assert.assertEquals("overlay-b", map.put("b", "local-b"));
+        Assert.assertNull(map.put("d", "local-d"));
+        Assert.assertEquals("local-b", map.get("b"));
+        Assert.assertEquals(4, map.size());
+        Assert.assertEquals(4, map.entrySet().size());
+        Assert.assertEquals(map("a", "base-a", "b", "local-b", "c", "overlay-c", "d", "local-d"), new HashMap<>(map));
+    }
+
+    @Test
+    public void removal() {
+        Map<String, Object> base = map("a", "base-a", "b", "base-b");
+        Map<String, Object> overlay = map("b", "overlay-b");
+        LayeredMap map = new LayeredMap(base, overlay);
+        Assert.assertEquals("overlay-b", map.remove("b"));
+        Assert.assertNull(map.remove("b"));
+        Assert.assertFalse(map.containsKey("b"));
+        // 覆盖层删除后不露出下层的值
+        Assert.assertNull(map.get("b"));
+        Assert.assertEquals(1, map.size());
+
+        map.put("b", "local-b");
+        Assert.assertEquals("local-b", map.get("b"));
+        Assert.assertEquals(2, map.size());
+
+        for (Iterator<Map.Entry<String, Object>> iterator = map.entrySet().iterator(); iterator.hasNext(); ) {
+            if ("a".equals(iterator.next().getKey())) {
+                iterator.remove();
+            }
+        }
+        Assert.assertEquals(map("b", "local-b"), new HashMap<>(map));
+        Assert.assertEquals(1, map.size());
+
+        map.clear();
+        Assert.assertTrue(map.isEmpty());
+        Assert.assertNull(map.get("a"));
+        Assert.assertEquals(map("a", "base-a", "b", "base-b"), base);
+        Assert.assertEquals(map("b", "overlay-b"), overlay);
+    }
+
+    @Test
+    public void copy() {
+        Map<String, Object> base = map("a", "base-a", "b", "base-b");
+        LayeredMap map = new LayeredMap(base, null);
+        map.put("c", "local-c");
+        map.remove("a");
+        LayeredMap copy = new LayeredMap(map);
+        Assert.assertEquals(map("b", "base-b", "c", "local-c"), new HashMap<>(copy));
+        Assert.assertEquals(2, copy.size());
+
+        copy.put("d", "copy-d");
+        copy.remove("c");
+        map.put("e", "local-e");
+        Assert.assertEquals(map("b", "base-b", "d", "copy-d"), new HashMap<>(copy));
+        Assert.assertEquals(map("b", "base-b", "c", "local-c", "e", "local-e"), new HashMap<>(map));
+        Assert.assertEquals(map("a", "base-a", "b", "base-b"), base);
+    }
+
+    @Test
+    public void lazyBaseNotLoaded() {
+        AtomicInteger loads = new AtomicInteger();
+        VariableMap base = new VariableMap();
+        base.putLazy("blob", loads::incrementAndGet);
+        base.put("title", "t1");
+        LayeredMap map = new LayeredMap(base, map("local", "l"));
+        Assert.assertEquals(3, map.size());
+        Assert.assertTrue(map.containsKey("blob"));
+        Assert.assertEquals(3, map.keySet().size());
+        Assert.assertEquals(0, loads.get());
+        Assert.assertEquals(1, map.get("blob"));
+        Assert.assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void deserializeByPut() throws Exception {
+        // Hessian按Map反序列化：无参构造后逐个put
+        LayeredMap map = new LayeredMap();
+        map.putAll(map("a", 1, "b", 2));
+        Assert.assertEquals(2, map.size());
+        Assert.assertEquals(map("a", 1, "b", 2), new HashMap<>(map));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(new LayeredMap(map("a", 1), map("b", 2)));
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            Object read = in.readObject();
+            Assert.assertEquals(HashMap.class, read.getClass());
+            Assert.assertEquals(map("a", 1, "b", 2), read);
+        }
+    }
+
+    private static Map<String, Object> map(Object... keyValues) {
+        Map<String, Object> map = new HashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            map.put((String)keyValues[i], keyValues[i + 1]);
+        }
+        return map;
+    }
+}
@@ -0,0 +1,88 @@
+package com.abb.flowable.test;
+
+import com.abb.flowable.domain.ResultDTO;
+import com.abb.flowable.domain.TaskDTO;
+import com.abb.flowable.domain.TaskQuery;
+import com.abb.flowable.service.impl.FlowServiceImpl;
+import com.abb.flowable.utils.PageCursor;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 游标编解码，按游标翻页与一次查询的顺序一致，翻页期间新建的任务不影响后续页
+ */
+public class PageCursorTest {
+    @Test
+    public void encodeDecode() {
+        PageCursor cursor = PageCursor.decode(PageCursor.encode(new Date(1000), "a:b"));
+        Assert.assertEquals(1000, cursor.getTime());
+        Assert.assertEquals("a:b", cursor.getId());
+        Assert.assertEquals(new Date(1001), cursor.getSeekTime());
+        Assert.assertNull(PageCursor.encode(null, "a"));
+        Assert.assertNull(PageCursor.encode(new Date(), null));
+        Assert.assertNull(PageCursor.decode(null));
+        Assert.assertNull(PageCursor.decode(""));
+        try {
+            PageCursor.decode(Base64.getUrlEncoder().encodeToString("1000".getBytes(StandardCharsets.UTF_8)));
+            Assert.fail("illegal cursor decoded");
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("illegal cursor"));
+        }
+    }
+
+    @Test
+    public void isAfter() {
+        PageCursor cursor = new PageCursor(1000, "5");
+        Assert.assertTrue(cursor.isAfter(new Date(999), "9"));
+        Assert.assertFalse(cursor.isAfter(new Date(1001), "0"));
+        Assert.assertTrue(cursor.isAfter(new Date(1000), "4"));
+        Assert.assertFalse(cursor.isAfter(new Date(1000), "5"));
+        Assert.assertFalse(cursor.isAfter(new Date(1000), "6"));
+        Assert.assertTrue(cursor.isAfter(null, "9"));
+    }
+
+    @Test
+    public void continuation() throws Exception {
+        FlowEngineSupport engine = new FlowEngineSupport();
+        try {
+            FlowServiceImpl flowService = engine.start(service -> {
+            }, "processes/approve.bpmn20.xml");
+            for (int i = 0; i < 10; i++) {
+                Assert.assertTrue(flowService.submitProcessor("approve", FlowEngineSupport.submit(1L, "a" + i)).isSuccess());
+            }
+            List<String> expected = ids(flowService.query(query(100, null)));
+            Assert.assertEquals(10, expected.size());
+
+            List<String> paged = new ArrayList<>();
+            String cursor = null;
+            do {
+                ResultDTO<List<TaskDTO>> page = flowService.query(query(3, cursor));
+                Assert.assertTrue(page.isSuccess());
+                paged.addAll(ids(page));
+                cursor = page.getCursor();
+                // 翻页期间的新任务排在游标之前
+                Assert.assertTrue(flowService.submitProcessor("approve", FlowEngineSupport.submit(1L, "new")).isSuccess());
+            } while (cursor != null);
+            Assert.assertEquals(expected, paged);
+        } finally {
+            engine.close();
+        }
+    }
+
+    private static TaskQuery query(int limit, String cursor) {
+        return new TaskQuery().setType(TaskQuery.TYPE.WAITING_PROCESS).setUserId("1").setProcessDefinitionKey("approve").setLimit(limit).setCursor(cursor)
+            .setWithVariables(false);
+    }
+
+    private static List<String> ids(ResultDTO<List<TaskDTO>> result) {
+        Assert.assertTrue(result.isSuccess());
+        return result.getData().stream().map(TaskDTO::getTaskId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,119 @@
+package com.abb.flowable.test;
+
+import com.abb.flowable.cache.RequestKeyStore;
+import com.abb.flowable.domain.ProcessInstanceDTO;
+import com.abb.flowable.domain.ResultDTO;
+import com.abb.flowable.domain.SubmitDTO;
+import com.abb.flowable.service.impl.FlowServiceImpl;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 重复的requestKey只提交一次，返回第一次的结果；只有主键冲突才算重复
+ */
+public class RequestKeyTest {
+    private FlowEngineSupport engine;
+    private FlowServiceImpl flowService;
+
+    @After
+    public void tearDown() {
+        engine.close();
+    }
+
+    @Test
+    public void submitOnce() throws Exception {
+        start(true);
+        ResultDTO<ProcessInstanceDTO> first = flowService.submitProcessor("timeline", submit("k1"));
+        ResultDTO<ProcessInstanceDTO> second = flowService.submitProcessor("timeline", submit("k1"));
+        Assert.assertTrue(first.isSuccess());
+        Assert.assertTrue(second.isSuccess());
+        Assert.assertEquals(first.getData().getProcessDefinitionId(), second.getData().getProcessDefinitionId());
+        Assert.assertEquals(1, instances());
+    }
+
+    @Test
+    public void longKey() throws Exception {
+        start(true);
+        String key = String.join("", Collections.nCopies(100, "long-key"));
+        Assert.assertTrue(flowService.submitProcessor("timeline", submit(key)).isSuccess());
+        Assert.assertTrue(flowService.submitProcessor("timeline", submit(key)).isSuccess());
+        Assert.assertTrue(flowService.submitProcessor("timeline", submit(key + "2")).isSuccess());
+        Assert.assertEquals(2, instances());
+    }
+
+    @Test
+    public void submitAllSkipsDuplicates() throws Exception {
+        start(true);
+        Assert.assertTrue(flowService.submitProcessor("timeline", submit("k0")).isSuccess());
+        List<SubmitDTO> submits = Arrays.asList(submit("k0"), submit("k1"), submit("k1"), submit("k2"), submit(null));
+        ResultDTO<List<ResultDTO<ProcessInstanceDTO>>> results = flowService.submitAll("timeline", submits);
+        Assert.assertTrue(results.isSuccess());
+        Assert.assertEquals(submits.size(), results.getData().size());
+        results.getData().forEach(result -> Assert.assertTrue(result.isSuccess()));
+        Assert.assertSame(results.getData().get(1), results.getData().get(2));
+        // k0已提交过，k1只提交一次
+        Assert.assertEquals(4, instances());
+    }
+
+    @Test
+    public void onlyConstraintViolationIsDuplicate() throws Exception {
+        start(true);
+        RequestKeyStore store = flowService.getRequestKeyStore();
+        put(store, "k1", "v1");
+        try {
+            put(store, "k1", "v2");
+            Assert.fail("duplicate key inserted");
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("duplicate request key"));
+        }
+        try {
+            // VALUE_超长
+            put(store, "k2", String.join("", Collections.nCopies(300, "v")));
+            Assert.fail("too long value inserted");
+        } catch (IllegalStateException e) {
+            Assert.assertFalse(e.getMessage(), e.getMessage().startsWith("duplicate request key"));
+        }
+        Assert.assertEquals("v1", store.get("k1"));
+        Assert.assertNull(store.get("k2"));
+    }
+
+    @Test
+    public void missingTable() throws Exception {
+        try {
+            start(false);
+            Assert.fail("started without FLW_REQUEST_KEY");
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("FLW_REQUEST_KEY"));
+        }
+    }
+
+    private void start(boolean createTables) throws Exception {
+        engine = new FlowEngineSupport();
+        flowService = engine.start(service -> {
+            service.setRequestKeyTtl(60000);
+            service.setCreateTables(createTables);
+        }, "processes/timeline.bpmn20.xml");
+    }
+
+    private void put(RequestKeyStore store, String key, String value) {
+        engine.getConfiguration().getManagementService().executeCommand(commandContext -> {
+            store.put(commandContext, key, value);
+            return null;
+        });
+    }
+
+    private long instances() {
+        return engine.getConfiguration().getHistoryService().createHistoricProcessInstanceQuery().processDefinitionKey("timeline").count();
+    }
+
+    private static SubmitDTO submit(String requestKey) {
+        SubmitDTO submitDTO = FlowEngineSupport.submit(1L, "t1");
+        submitDTO.setRequestKey(requestKey);
+        return submitDTO;
+    }
+}
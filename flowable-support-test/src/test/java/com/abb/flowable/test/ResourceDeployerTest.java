@@ -0,0 +1,151 @@
+package com.abb.flowable.test;
+
+import com.abb.flowable.service.impl.ResourceDeployer;
+import org.flowable.bpmn.model.BpmnModel;
+import org.flowable.engine.RepositoryService;
+import org.flowable.engine.repository.Deployment;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.util.StreamUtils;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * 按流程key和内容哈希判断是否需要重新部署
+ */
+public class ResourceDeployerTest {
+    private FlowEngineSupport engine;
+    private RepositoryService repositoryService;
+    private ResourceDeployer deployer;
+
+    @Before
+    public void setUp() throws Exception {
+        engine = new FlowEngineSupport();
+        engine.start(service -> {
+        });
+        repositoryService = engine.getConfiguration().getRepositoryService();
+        deployer = new ResourceDeployer(repositoryService, engine.getConfiguration().getProcessValidator(), 2);
+    }
+
+    @After
+    public void tearDown() {
+        engine.close();
+    }
+
+    @Test
+    public void skipUnchanged() throws Exception {
+        Resource[] resources = {new ClassPathResource("processes/timeline.bpmn20.xml"), new ClassPathResource("processes/approve.bpmn20.xml")};
+        Map<String, BpmnModel> first = deployer.deploy(resources);
+        Assert.assertEquals(2, first.size());
+        Assert.assertEquals(2, repositoryService.createDeploymentQuery().count());
+
+        Map<String, BpmnModel> second = deployer.deploy(resources);
+        Assert.assertEquals(first.keySet(), second.keySet());
+        Assert.assertEquals(2, repositoryService.createDeploymentQuery().count());
+
+        // 只有内容变化的文件重新部署
+        Resource changed = named("timeline.bpmn20.xml", read("processes/timeline.bpmn20.xml").replace("startForm1", "startForm2"));
+        deployer.deploy(new Resource[] {changed, resources[1]});
+        Assert.assertEquals(3, repositoryService.createDeploymentQuery().count());
+        Assert.assertEquals(2, repositoryService.createProcessDefinitionQuery().processDefinitionKey("timeline").count());
+        Assert.assertEquals(1, repositoryService.createProcessDefinitionQuery().processDefinitionKey("approve").count());
+
+        // 改回原内容也是新版本
+        deployer.deploy(resources);
+        Assert.assertEquals(4, repositoryService.createDeploymentQuery().count());
+    }
+
+    @Test
+    public void nonBpmnResources() throws Exception {
+        Resource process = new ClassPathResource("processes/timeline.bpmn20.xml");
+        Map<String, BpmnModel> models = deployer.deploy(new Resource[] {process, named("form.json", "{\"v\":1}")});
+        Assert.assertEquals(1, models.size());
+        Assert.assertEquals(2, repositoryService.createDeploymentQuery().count());
+        Assert.assertEquals(1, repositoryService.createDeploymentQuery().deploymentName("form.json").count());
+
+        deployer.deploy(new Resource[] {process, named("form.json", "{\"v\":1}")});
+        Assert.assertEquals(2, repositoryService.createDeploymentQuery().count());
+        deployer.deploy(new Resource[] {process, named("form.json", "{\"v\":2}")});
+        Assert.assertEquals(2, repositoryService.createDeploymentQuery().deploymentName("form.json").count());
+    }
+
+    @Test
+    public void categoryUntouched() throws Exception {
+        deployer.deploy(new Resource[] {new ClassPathResource("processes/timeline.bpmn20.xml")});
+        Deployment deployment = repositoryService.createDeploymentQuery().singleResult();
+        Assert.assertNull(deployment.getCategory());
+        Assert.assertTrue(deployment.getKey(), deployment.getKey().startsWith("sha256:"));
+    }
+
+    @Test
+    public void sameFileNameDifferentKeys() throws Exception {
+        String xml = read("processes/timeline.bpmn20.xml");
+        Resource[] resources = {named("process.bpmn20.xml", xml.replace("\"timeline\"", "\"a\"")),
+            named("process.bpmn20.xml", xml.replace("\"timeline\"", "\"b\""))};
+        deployer.deploy(resources);
+        deployer.deploy(resources);
+        Assert.assertEquals(2, repositoryService.createDeploymentQuery().count());
+        Assert.assertEquals(1, repositoryService.createProcessDefinitionQuery().processDefinitionKey("a").count());
+        Assert.assertEquals(1, repositoryService.createProcessDefinitionQuery().processDefinitionKey("b").count());
+    }
+
+    @Test
+    public void duplicateKey() throws Exception {
+        String xml = read("processes/timeline.bpmn20.xml");
+        try {
+            deployer.deploy(new Resource[] {named("a/timeline.bpmn20.xml", xml), named("b/timeline.bpmn20.xml", xml)});
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("process key timeline"));
+        }
+        Assert.assertEquals(0, repositoryService.createDeploymentQuery().count());
+    }
+
+    @Test
+    public void schemaValidation() throws Exception {
+        String xml = read("processes/timeline.bpmn20.xml").replace("<endEvent id=\"end\"/>", "<endEvent id=\"end\"/><unknownElement/>");
+        try {
+            deployer.deploy(new Resource[] {named("timeline.bpmn20.xml", xml)});
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("invalid process files"));
+        }
+        Assert.assertEquals(0, repositoryService.createDeploymentQuery().count());
+    }
+
+    @Test
+    public void processValidation() throws Exception {
+        // 符合XSD，但引擎的校验器要求scriptTask有脚本
+        String xml = read("processes/timeline.bpmn20.xml").replace("<endEvent id=\"end\"/>",
+            "<endEvent id=\"end\"/><scriptTask id=\"script\" scriptFormat=\"groovy\"/>");
+        try {
+            deployer.deploy(new Resource[] {named("timeline.bpmn20.xml", xml)});
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("script"));
+        }
+        Assert.assertEquals(0, repositoryService.createDeploymentQuery().count());
+    }
+
+    private static String read(String path) throws Exception {
+        try (InputStream in = new ClassPathResource(path).getInputStream()) {
+            return StreamUtils.copyToString(in, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static Resource named(String path, String content) {
+        return new ByteArrayResource(content.getBytes(StandardCharsets.UTF_8), path) {
+            @Override
+            public String getFilename() {
+                return path.substring(path.lastIndexOf('/') + 1);
+            }
+        };
+    }
+}
@@ -0,0 +1,137 @@
+package com.abb.flowable.test;
+
+import com.abb.flowable.cache.ResultCache;
+import com.abb.flowable.domain.CompleteDTO;
+import com.abb.flowable.domain.ResultDTO;
+import com.abb.flowable.domain.TaskDTO;
+import com.abb.flowable.domain.TaskQuery;
+import com.abb.flowable.domain.VariableMap;
+import com.abb.flowable.service.impl.FlowServiceImpl;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 缓存返回副本；按用户失效，失效前开始的查询不再写入；任务变化后相关用户的结果失效
+ */
+public class ResultCacheTest {
+    @Test
+    public void copies() {
+        ResultCache cache = new ResultCache(60000, 100);
+        AtomicInteger loads = new AtomicInteger();
+        VariableMap variables = new VariableMap();
+        variables.put("k", "v1");
+        variables.putLazy("blob", loads::incrementAndGet);
+        TaskDTO taskDTO = task("t1", "p1");
+        taskDTO.setVariables(variables);
+        ResultDTO<List<TaskDTO>> result = result(taskDTO);
+        cache.put("key", "1", cache.generation("1"), result);
+        // 写入后修改原结果不影响缓存
+        taskDTO.setTitle("changed");
+        result.getData().add(task("t2", "p2"));
+
+        ResultDTO<List<TaskDTO>> cached = cache.get("key");
+        Assert.assertEquals(1, cached.getData().size());
+        Assert.assertEquals("title", cached.getData().get(0).getTitle());
+        cached.getData().get(0).setTitle("changed");
+        cached.getData().get(0).getVariables().put("k", "v2");
+        cached.getData().clear();
+
+        cached = cache.get("key");
+        Assert.assertEquals("title", cached.getData().get(0).getTitle());
+        Assert.assertEquals("v1", cached.getData().get(0).getVariables().get("k"));
+        Assert.assertEquals(0, loads.get());
+        Assert.assertEquals(1, cached.getData().get(0).getVariables().get("blob"));
+        Assert.assertEquals(2, cache.getHitCount());
+    }
+
+    @Test
+    public void invalidate() {
+        ResultCache cache = new ResultCache(60000, 100);
+        cache.put("k1", "1", cache.generation("1"), result(task("t1", "p1")));
+        cache.put("k2", "2", cache.generation("2"), result(task("t2", "p2")));
+        long before = cache.generation("1");
+        cache.invalidate("1");
+        Assert.assertNull(cache.get("k1"));
+        Assert.assertNotNull(cache.get("k2"));
+        // 失效前开始的查询
+        cache.put("k1", "1", before, result(task("t1", "p1")));
+        Assert.assertNull(cache.get("k1"));
+        cache.put("k1", "1", cache.generation("1"), result(task("t1", "p1")));
+        Assert.assertNotNull(cache.get("k1"));
+
+        cache.invalidateAll();
+        Assert.assertEquals(0, cache.size());
+        Assert.assertNull(cache.get("k2"));
+    }
+
+    @Test
+    public void invalidateOnEvents() throws Exception {
+        FlowEngineSupport engine = new FlowEngineSupport();
+        try {
+            FlowServiceImpl flowService = engine.start(service -> service.setResultCacheTtl(60000), "processes/approve.bpmn20.xml",
+                "processes/claim.bpmn20.xml");
+            ResultCache cache = flowService.getResultCache();
+            Assert.assertTrue(flowService.submitProcessor("approve", FlowEngineSupport.submit(1L, "a1")).isSuccess());
+            Assert.assertEquals(1, ids(flowService.query(query("1"))).size());
+            Assert.assertEquals(1, ids(flowService.query(query("1"))).size());
+            Assert.assertEquals(1, cache.getHitCount());
+
+            // 新任务的assignee失效
+            Assert.assertTrue(flowService.submitProcessor("approve", FlowEngineSupport.submit(1L, "a2")).isSuccess());
+            List<String> tasks = ids(flowService.query(query("1")));
+            Assert.assertEquals(2, tasks.size());
+
+            Assert.assertTrue(flowService.complete(tasks.get(0), complete()).isSuccess());
+            Assert.assertEquals(1, ids(flowService.query(query("1"))).size());
+
+            // 候选人认领后，缓存结果中包含该任务的其他候选人失效
+            Assert.assertTrue(flowService.submitProcessor("claim", FlowEngineSupport.submit(1L, "c1")).isSuccess());
+            List<String> claims = ids(flowService.query(query("2")));
+            Assert.assertEquals(1, claims.size());
+            Assert.assertEquals(claims, ids(flowService.query(query("3"))));
+            engine.getConfiguration().getTaskService().claim(claims.get(0), "2");
+            Assert.assertEquals(0, ids(flowService.query(query("3"))).size());
+            Assert.assertEquals(claims, ids(flowService.query(query("2"))));
+        } finally {
+            engine.close();
+        }
+    }
+
+    private static TaskQuery query(String userId) {
+        return new TaskQuery().setType(TaskQuery.TYPE.WAITING_PROCESS).setUserId(userId).setLimit(100).setWithVariables(false);
+    }
+
+    private static CompleteDTO complete() {
+        CompleteDTO completeDTO = new CompleteDTO();
+        completeDTO.setUserId(1L);
+        completeDTO.setUserName("user1");
+        return completeDTO;
+    }
+
+    private static List<String> ids(ResultDTO<List<TaskDTO>> result) {
+        Assert.assertTrue(result.isSuccess());
+        List<String> ids = new ArrayList<>();
+        result.getData().forEach(taskDTO -> ids.add(taskDTO.getTaskId()));
+        return ids;
+    }
+
+    private static TaskDTO task(String taskId, String processInstanceId) {
+        TaskDTO taskDTO = new TaskDTO();
+        taskDTO.setTaskId(taskId);
+        taskDTO.setProcessInstanceId(processInstanceId);
+        taskDTO.setTitle("title");
+        return taskDTO;
+    }
+
+    private static ResultDTO<List<TaskDTO>> result(TaskDTO... tasks) {
+        List<TaskDTO> list = new ArrayList<>();
+        for (TaskDTO taskDTO : tasks) {
+            list.add(taskDTO);
+        }
+        return ResultDTO.buildSuccess(list, list.size());
+    }
+}
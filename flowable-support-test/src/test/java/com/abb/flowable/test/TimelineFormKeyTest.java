@@ -0,0 +1,88 @@
+package com.abb.flowable.test;
+
+import com.abb.flowable.domain.Options;
+import com.abb.flowable.domain.ProcessInstanceDTO;
+import com.abb.flowable.domain.ProcessNodeDTO;
+import com.abb.flowable.domain.ResultDTO;
+import com.abb.flowable.service.impl.FlowServiceImpl;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.util.StreamUtils;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 已结束流程的节点表单取实例自身版本，重新部署后读取(包括缓存)不受影响
+ */
+public class TimelineFormKeyTest {
+    private FlowEngineSupport engine;
+    private FlowServiceImpl flowService;
+
+    @Before
+    public void setUp() throws Exception {
+        engine = new FlowEngineSupport();
+        flowService = engine.start(service -> service.setTimelineCacheWeight(1000), "processes/timeline.bpmn20.xml");
+    }
+
+    @After
+    public void tearDown() {
+        engine.close();
+    }
+
+    @Test
+    public void redeployThenRead() throws Exception {
+        ResultDTO<ProcessInstanceDTO> submitted = flowService.submitProcessor("timeline", FlowEngineSupport.submit(1L, "t1"));
+        Assert.assertTrue(submitted.isSuccess());
+        String processInstanceId = engine.getConfiguration().getHistoryService().createHistoricProcessInstanceQuery().processDefinitionKey("timeline")
+            .singleResult().getId();
+
+        String xml;
+        try (InputStream in = new ClassPathResource("processes/timeline.bpmn20.xml").getInputStream()) {
+            xml = StreamUtils.copyToString(in, StandardCharsets.UTF_8);
+        }
+        engine.getConfiguration().getRepositoryService().createDeployment().addString("timeline.bpmn20.xml", xml.replace("startForm1", "startForm2"))
+            .deploy();
+        Assert.assertEquals("startForm2", flowService.getStartFormKey("timeline").getData());
+
+        Options options = new Options().setWithVariables(true);
+        // 第一次读取时未缓存，第二次读取缓存
+        for (int i = 0; i < 2; i++) {
+            ResultDTO<List<ProcessNodeDTO>> nodes = flowService.getByInstanceId(processInstanceId, options);
+            Assert.assertTrue(nodes.isSuccess());
+            Assert.assertTrue(nodes.getData().get(0).isStartEvent());
+            Assert.assertEquals("startForm1", nodes.getData().get(0).getFormKey());
+        }
+        Assert.assertEquals(1, flowService.getTimelineCache().getHitCount());
+    }
+
+    @Test
+    public void callerChangesNotCached() {
+        Assert.assertTrue(flowService.submitProcessor("timeline", FlowEngineSupport.submit(1L, "t1")).isSuccess());
+        String processInstanceId = engine.getConfiguration().getHistoryService().createHistoricProcessInstanceQuery().processDefinitionKey("timeline")
+            .singleResult().getId();
+        Options options = new Options().setWithVariables(true);
+        List<ProcessNodeDTO> first = flowService.getByInstanceId(processInstanceId, options).getData();
+        Map<String, Object> variables = new HashMap<>(first.get(0).getVariables());
+        Assert.assertFalse(variables.isEmpty());
+        // 写入缓存的结果和缓存返回的结果都由调用方修改
+        for (int i = 0; i < 2; i++) {
+            List<ProcessNodeDTO> nodes = flowService.getByInstanceId(processInstanceId, options).getData();
+            Assert.assertEquals(first.size(), nodes.size());
+            Assert.assertEquals("startForm1", nodes.get(0).getFormKey());
+            Assert.assertEquals(variables, new HashMap<>(nodes.get(0).getVariables()));
+            first.get(0).setFormKey("changed");
+            first.get(0).getVariables().put("changed", true);
+            nodes.get(0).setFormKey("changed");
+            nodes.get(0).getVariables().clear();
+            nodes.clear();
+        }
+        Assert.assertEquals(2, flowService.getTimelineCache().getHitCount());
+    }
+}
@@ -0,0 +1,55 @@
+package com.abb.flowable.test;
+
+import com.abb.flowable.index.TitleIndex;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+/**
+ * 索引匹配与LIKE语义一致，无法使用索引时返回null
+ */
+public class TitleIndexTest {
+    @Test
+    public void match() {
+        TitleIndex index = new TitleIndex(100);
+        index.put("p1", "请假申请");
+        index.put("p2", "出差请假");
+        index.put("p3", "Leave Request");
+        Assert.assertEquals(new HashSet<>(Arrays.asList("p1", "p2")), index.match("%请假%"));
+        Assert.assertEquals(Collections.singleton("p1"), index.match("请假%"));
+        Assert.assertEquals(Collections.singleton("p2"), index.match("%请假"));
+        Assert.assertEquals(Collections.singleton("p1"), index.match("请假申请"));
+        Assert.assertEquals(Collections.singleton("p3"), index.match("%LEAVE%"));
+        Assert.assertEquals(Collections.emptySet(), index.match("%报销%"));
+        Assert.assertEquals(Collections.emptySet(), index.match("%假请%"));
+        // 无法使用索引
+        Assert.assertNull(index.match("%假%"));
+        Assert.assertNull(index.match("%请%假%"));
+        Assert.assertNull(index.match("%请_假%"));
+    }
+
+    @Test
+    public void update() {
+        TitleIndex index = new TitleIndex(100);
+        index.put("p1", "请假申请");
+        index.put("p1", "报销申请");
+        Assert.assertEquals(Collections.emptySet(), index.match("%请假%"));
+        Assert.assertEquals(Collections.singleton("p1"), index.match("%报销%"));
+        index.put("p1", null);
+        Assert.assertEquals(Collections.emptySet(), index.match("%报销%"));
+        index.put(null, "报销");
+    }
+
+    @Test
+    public void tooManyMatches() {
+        TitleIndex index = new TitleIndex(2);
+        for (int i = 0; i < 3; i++) {
+            index.put("p" + i, "请假" + i);
+        }
+        Assert.assertNull(index.match("%请假%"));
+        Assert.assertEquals(Collections.singleton("p1"), index.match("%请假1"));
+    }
+}
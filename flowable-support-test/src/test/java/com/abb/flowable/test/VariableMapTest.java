@@ -0,0 +1,82 @@
+package com.abb.flowable.test;
+
+import com.abb.flowable.domain.VariableMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 延迟加载的值只在读取时加载一次
+ */
+public class VariableMapTest {
+    @Test
+    public void loadOnGet() {
+        AtomicInteger loads = new AtomicInteger();
+        VariableMap map = new VariableMap();
+        map.put("title", "t1");
+        map.putLazy("blob", () -> {
+            loads.incrementAndGet();
+            return new byte[] {1, 2};
+        });
+        Assert.assertEquals(2, map.size());
+        Assert.assertTrue(map.containsKey("blob"));
+        Assert.assertEquals(2, map.keySet().size());
+        Assert.assertEquals("t1", map.get("title"));
+        Assert.assertEquals(0, loads.get());
+
+        Assert.assertArrayEquals(new byte[] {1, 2}, (byte[])map.get("blob"));
+        Assert.assertArrayEquals(new byte[] {1, 2}, (byte[])map.get("blob"));
+        Assert.assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void putAndRemoveSkipLoad() {
+        AtomicInteger loads = new AtomicInteger();
+        VariableMap map = new VariableMap();
+        map.putLazy("a", loads::incrementAndGet);
+        map.putLazy("b", loads::incrementAndGet);
+        map.put("a", "x");
+        map.remove("b");
+        Assert.assertEquals(1, map.size());
+        Assert.assertEquals("x", map.get("a"));
+        Assert.assertFalse(map.containsKey("b"));
+        Assert.assertEquals(0, loads.get());
+    }
+
+    @Test
+    public void copyKeepsLazyValues() {
+        AtomicInteger loads = new AtomicInteger();
+        VariableMap map = new VariableMap();
+        map.putLazy("blob", loads::incrementAndGet);
+        VariableMap copy = new VariableMap(map);
+        Assert.assertEquals(0, loads.get());
+        Assert.assertEquals(1, copy.get("blob"));
+        Assert.assertTrue(map.containsKey("blob"));
+    }
+
+    @Test
+    public void serializeAsHashMap() throws Exception {
+        VariableMap map = new VariableMap();
+        map.put("title", "t1");
+        map.putLazy("blob", () -> "loaded");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(map);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            Object read = in.readObject();
+            Assert.assertEquals(HashMap.class, read.getClass());
+            Map<String, Object> expected = new HashMap<>();
+            expected.put("title", "t1");
+            expected.put("blob", "loaded");
+            Assert.assertEquals(expected, read);
+        }
+    }
+}